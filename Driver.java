@@ -4,6 +4,15 @@ public class Driver {
 
     public static void main(String args[]) {
 
+        //with arguments this is the command line tool, see SDESTool
+        if (args.length > 0) {
+
+            SDESTool.main(args);
+
+            return;
+
+        }
+
         SDES sdes = new SDES();
         boolean[] test = {false, true, true, false, true, true, false, false};
         boolean[] test2 = {false, false, false};
@@ -1,5 +1,4 @@
 import java.util.Arrays;
-import java.util.BitSet;
 
 /**
  * @author Daniel Haluszka, Zachary Reynolds, Dylan Chow 
@@ -7,15 +6,15 @@ import java.util.BitSet;
  */
 public class SDES {
 
-    private boolean[] key;    
-    private boolean [] key1 = new boolean [8];
-    private boolean [] key2 = new boolean [8];
-    private int[] epv1 = {0, 6, 8, 3, 7, 2, 9, 5}; // k1 values
-    private int[] epv2 = {7, 2, 5, 4, 9, 1, 8, 0}; // k2 values
-    private int[] ipPerm = {1, 5, 2, 0, 3, 7, 4, 6}; // IP values
-    private int[] ipInversePerm = {3, 0, 2, 4, 6, 1, 7, 5};// IP Inverse Values
-    private int[] p4Select = {1, 3, 2, 0}; // P4 Values
-    private int[] epPerm = {3, 0, 1, 2, 1, 2, 3, 0}; // EP Values
+    static final int[] EPV1 = {0, 6, 8, 3, 7, 2, 9, 5}; // k1 values
+    static final int[] EPV2 = {7, 2, 5, 4, 9, 1, 8, 0}; // k2 values
+    static final int[] IP_PERM = {1, 5, 2, 0, 3, 7, 4, 6}; // IP values
+    static final int[] IP_INVERSE_PERM = {3, 0, 2, 4, 6, 1, 7, 5};// IP Inverse Values
+    static final int[] P4_SELECT = {1, 3, 2, 0}; // P4 Values
+    static final int[] EP_PERM = {3, 0, 1, 2, 1, 2, 3, 0}; // EP Values
+
+    private volatile SDESKey key; // immutable, so encrypt/decrypt may run on any number of threads
+    private volatile SDESEngine engine = SDESEngines.defaultEngine(); // runs the byte array methods
 
     /**
      * @author Daniel Haluszka
@@ -23,7 +22,53 @@ public class SDES {
      */
     public SDES() {
 
-        this.key = new boolean[10];
+        this(SDESKey.of(0));
+
+    }
+
+    /**
+     * @param key The key to encrypt and decrypt with.
+     * Constructor for SDES class using an existing key.
+     */
+    public SDES(SDESKey key) {
+
+        this.key = key;
+
+    }
+
+    /**
+     * @return The current key.
+     */
+    public SDESKey getKey() {
+
+        return key;
+
+    }
+
+    /**
+     * @param key The key to encrypt and decrypt with from now on.
+     */
+    public void setKey(SDESKey key) {
+
+        this.key = key;
+
+    }
+
+    /**
+     * @return The engine that runs encrypt and decrypt on byte arrays and Strings.
+     */
+    public SDESEngine getEngine() {
+
+        return engine;
+
+    }
+
+    /**
+     * @param engine The engine to run encrypt and decrypt on byte arrays and Strings with from now on, see SDESEngines.
+     */
+    public void setEngine(SDESEngine engine) {
+
+        this.engine = engine;
 
     }
 
@@ -45,7 +90,7 @@ public class SDES {
             //check for invalid indices
             if (epv[i] > (inp.length - 1)) {
 
-                throw new IllegalArgumentException("Value at index (" + i + ") of epv (epv[" + i + "] = " + epv[i] + ") is out of bounds for inp (Size of inp: " + inp.length + ")");
+                throw SDESMetrics.error(new IllegalArgumentException("Value at index (" + i + ") of epv (epv[" + i + "] = " + epv[i] + ") is out of bounds for inp (Size of inp: " + inp.length + ")"));
 
             }
 
@@ -66,10 +111,9 @@ public class SDES {
     public void getKey10(java.util.Scanner scanner) {
 
         String input;
-        int count = 0; //will increment each time an index of the key is set
 
-        //loop until all 10 indexes of the key have been set
-        while (count < 10) {
+        //loop until a valid key is entered
+        while (true) {
 
             System.out.println("Enter a 10-bit key: ");
             input = scanner.nextLine();
@@ -80,30 +124,16 @@ public class SDES {
 
             } else {
 
-                //convert input string to char array for easier access
-                char[] inputArr = input.toCharArray();
-
-                //loop through each value of input, setting each index of key to the appropriate value, incrementing count after each loop
-                for (int i = 0; i < 10; i++) {
-
-                    if (inputArr[i] == '1') {
-
-                        this.key[i] = true;
+                try {
 
-                    } else if (inputArr[i] == '0') {
+                    this.key = new SDESKey(SDESCodec.parseBits(input));
 
-                        this.key[i] = false;
+                    return;
 
-                    } else {
+                } catch (IllegalArgumentException e) {
 
-                        //if the current char is not 0 or 1, the input is not valid
-                        System.out.println("Invalid input received. Please ensure that the key contains only zeros and ones.\n");
-                        count = 0;
-                        break;
-
-                    }
-                    
-                    count++;
+                    //if a char is not 0 or 1, the input is not valid
+                    System.out.println("Invalid input received. Please ensure that the key contains only zeros and ones.\n");
 
                 }
 
@@ -125,6 +155,18 @@ public class SDES {
 
     }
 
+    /**
+     * @param inp An array of bytes, such as decrypted plain text.
+     * @param charset The charset the bytes were encoded with.
+     * @return The characters as a String.
+     * Convert the given byte array to a String with an explicit charset instead of the platform default.
+     */
+    public java.lang.String byteArrayToString(byte[] inp, java.nio.charset.Charset charset) {
+
+        return new String(inp, charset);
+
+    }
+
     /**
      * @author Daniel Haluszka
      * @param inp The array of bits to permute.
@@ -161,7 +203,7 @@ public class SDES {
         //check for different lengths
         if (x.length != y.length) {
 
-            throw new IllegalArgumentException("Operands of XOR are not the same length (Size of x: " + x.length + ", Size of y: " + y.length + ")");
+            throw SDESMetrics.error(new IllegalArgumentException("Operands of XOR are not the same length (Size of x: " + x.length + ", Size of y: " + y.length + ")"));
 
         }
 
@@ -231,24 +273,11 @@ public class SDES {
         //check for invalid length
         if (inp.length > 8) {
 
-            throw new IllegalArgumentException("Bit array is longer than 8 bits (Size of inp: " + inp.length + ")");
+            throw SDESMetrics.error(new IllegalArgumentException("Bit array is longer than 8 bits (Size of inp: " + inp.length + ")"));
 
         }
 
-        byte result = 0;
-
-        //loop backwards through each index of the input, adding the appropriate power of two (which is stored in i) to the result
-        for (int i = 0; i < inp.length; i++) {
-
-            if (inp[(inp.length - 1) - i] == true) {
-
-                result += Math.pow(2, i);
-
-            }
-
-        }
-
-        return result;
+        return (byte) SDESBits.toInt(inp);
 
     }
 
@@ -265,32 +294,11 @@ public class SDES {
         //check for sizes that are not applicable to a byte
         if (size < 1 || size > 8) {
 
-            throw new IllegalArgumentException("Specified size (" + size + ") is out of bounds (1-8)");
+            throw SDESMetrics.error(new IllegalArgumentException("Specified size (" + size + ") is out of bounds (1-8)"));
 
         }
 
-        boolean[] result = new boolean[size];
-        int remainder = b;
-        int bitMask = 1;
-
-        //loop through each bit in remainder by bitshifting to the right one position with each loop
-        for (int i = 0; i < size; i++) {
-
-            //perform bitwise AND on remainder and bitMask, this will produce a 1 if the current last bit of remainder is 1
-            if ((remainder & bitMask) == 1) {
-
-                //if the last bit of the remainder is one, set the respective bit in the resulting bit array
-                //(which is kept track of with i) to 1, otherwise leave 0
-                result[(result.length - 1) - i] = true;
-
-            }
-
-            //shift remainder 1 to the right to examine the next bit
-            remainder = remainder >>> 1;
-
-        }
-
-        return result;
+        return SDESBits.toBits(b, size);
 
     }
     
@@ -300,13 +308,10 @@ public class SDES {
 	 * k A bit array represented as booleans, true=1, false=0.
 	 */
 	
-	public boolean[] f(boolean[] x, boolean[] k)
+	public boolean[] f(boolean[] x, boolean[] k) throws IllegalArgumentException
 	{
-		boolean[] feist = feistel(k, x);
-		boolean[] left = lh(x);
-		boolean[] right = rh(x);
-		left = xor(feist, left);
-		return concat(left, right);
+		checkBlock(x, k);
+		return SDESBits.toBits(SDESBits.f(SDESBits.toInt(x), SDESBits.toInt(k)), 8);
 	}
 	
 	/**
@@ -315,183 +320,24 @@ public class SDES {
 	 * k A bit array represented as booleans, true=1, false=0.
 	 */
 	
-	public boolean[] feistel(boolean[] k, boolean[] x)
+	public boolean[] feistel(boolean[] k, boolean[] x) throws IllegalArgumentException
 	{
-		boolean[] a;
-		a = rh(x);
-		int[] ep = {3,0,1,2,1,2,3,0};
-		a = expPerm(a, ep);
-		a = xor(a, k);
-		boolean[] left = lh(a);
-		left = s0(left);
-		boolean[] right = rh(a);
-		right = s1(right);
-		boolean[] p = concat(left, right);
-		int[] p4 = {1,3,2,0};
-		boolean[] z = expPerm(p, p4);
-		return z;
+		checkBlock(x, k);
+		return SDESBits.toBits(SDESBits.feistel(SDESBits.toInt(k), SDESBits.toInt(x) & 0xF), 4);
 	}
 	
 	/**
-	 * @author Zachary Reynolds
-	 * a A bit array represented as booleans, true=1, false=0.
+	 * x A bit array represented as booleans, true=1, false=0.
+	 * k A bit array represented as booleans, true=1, false=0.
+	 * Check that the block and the subkey are both 8 bits long.
 	 */
 	
-	public boolean[] s0 (boolean[] a)
+	private void checkBlock(boolean[] x, boolean[] k) throws IllegalArgumentException
 	{
-		boolean[] s = new boolean[2];
-		if(a[0] == false)
+		if(x.length != 8 || k.length != 8)
 		{
-			if(a[1] == false)
-			{
-				if(a[2] == false)
-				{
-					if(a[3] == false)
-					{
-						//0000
-						s[0] = false;
-						s[1] = true;
-						return s;
-					}
-					else
-					{
-						//0001
-						s[0] = true;
-						s[1] = true;
-						return s;
-					}
-				}
-				else
-				{
-					if(a[3] == false)
-					{
-						//0010
-						s[0] = false;
-						s[1] = false;
-						return s;
-					}
-					else
-					{
-						//0011
-						s[0] = true;
-						s[1] = false;
-						return s;
-					}
-				}
-			}
-			else {
-				if(a[2] == false)
-				{
-					if(a[3] == false)
-					{
-						//0100
-						s[0] = true;
-						s[1] = true;
-						return s;
-					}
-					else
-					{
-						//0101
-						s[0] = false;
-						s[1] = true;
-						return s;
-					}
-				}
-				else
-				{
-					if(a[3] == false)
-					{
-						//0110
-						s[0] = true;
-						s[1] = false;
-						return s;
-					}
-					else
-					{
-						//0111
-						s[0] = false;
-						s[1] = false;
-						return s;
-					}
-				}
-			}
+			throw SDESMetrics.error(new IllegalArgumentException("Block and subkey must be 8 bits long (Size of x: " + x.length + ", Size of k: " + k.length + ")"));
 		}
-			else
-			{
-				if(a[1] == false)
-				{
-					if(a[2] == false)
-					{
-						if(a[3] == false)
-						{
-							//1000
-							s[0] = false;
-							s[1] = false;
-							return s;
-						}
-						else
-						{
-							//1001
-							s[0] = true;
-							s[1] = true;
-							return s;
-						}
-					}
-					else
-					{
-						if(a[3] == false)
-						{
-							//1010
-							s[0] = true;
-							s[1] = false;
-							return s;
-						}
-						else
-						{
-							//1011
-							s[0] = false;
-							s[1] = true;
-							return s;
-						}
-					}
-				}
-				else {
-					if(a[2] == false)
-					{
-						if(a[3] == false)
-						{
-							//1100
-							s[0] = false;
-							s[1] = true;
-							return s;
-						}
-						else
-						{
-							//1101
-							s[0] = true;
-							s[1] = true;
-							return s;
-						}
-					}
-					else
-					{
-						if(a[3] == false)
-						{
-							//1110
-							s[0] = true;
-							s[1] = true;
-							return s;
-						}
-						else
-						{
-							//1111
-							s[0] = true;
-							s[1] = false;
-							return s;
-						}
-					}
-				}
-			}
 	}
 	
 	/**
@@ -499,161 +345,34 @@ public class SDES {
 	 * a A bit array represented as booleans, true=1, false=0.
 	 */
 	
-	public boolean[] s1 (boolean[] b)
+	public boolean[] s0 (boolean[] a) throws IllegalArgumentException
 	{
-		boolean[] s = new boolean[2];
-		if(b[0] == false)
+		checkSBoxInput(a);
+		return SDESBits.toBits(SDESBits.s0(SDESBits.toInt(a)), 2);
+	}
+	
+	/**
+	 * @author Zachary Reynolds
+	 * a A bit array represented as booleans, true=1, false=0.
+	 */
+	
+	public boolean[] s1 (boolean[] b) throws IllegalArgumentException
+	{
+		checkSBoxInput(b);
+		return SDESBits.toBits(SDESBits.s1(SDESBits.toInt(b)), 2);
+	}
+	
+	/**
+	 * a A bit array represented as booleans, true=1, false=0.
+	 * Check that the S-box input is 4 bits long.
+	 */
+	
+	private void checkSBoxInput(boolean[] a) throws IllegalArgumentException
+	{
+		if(a.length != 4)
 		{
-			if(b[1] == false)
-			{
-				if(b[2] == false)
-				{
-					if(b[3] == false)
-					{
-						//0000
-						s[0] = false;
-						s[1] = false;
-						return s;
-					}
-					else
-					{
-						//0001
-						s[0] = true;
-						s[1] = false;
-						return s;
-					}
-				}
-				else
-				{
-					if(b[3] == false)
-					{
-						//0010
-						s[0] = false;
-						s[1] = true;
-						return s;
-					}
-					else
-					{
-						//0011
-						s[0] = false;
-						s[1] = false;
-						return s;
-					}
-				}
-			}
-			else {
-				if(b[2] == false)
-				{
-					if(b[3] == false)
-					{
-						//0100
-						s[0] = true;
-						s[1] = false;
-						return s;
-					}
-					else
-					{
-						//0101
-						s[0] = false;
-						s[1] = true;
-						return s;
-					}
-				}
-				else
-				{
-					if(b[3] == false)
-					{
-						//0110
-						s[0] = true;
-						s[1] = true;
-						return s;
-					}
-					else
-					{
-						//0111
-						s[0] = true;
-						s[1] = true;
-						return s;
-					}
-				}
-			}
+			throw SDESMetrics.error(new IllegalArgumentException("S-box input must be 4 bits long (Size of input: " + a.length + ")"));
 		}
-			else
-			{
-				if(b[1] == false)
-				{
-					if(b[2] == false)
-					{
-						if(b[3] == false)
-						{
-							//1000
-							s[0] = true;
-							s[1] = true;
-							return s;
-						}
-						else
-						{
-							//1001
-							s[0] = true;
-							s[1] = false;
-							return s;
-						}
-					}
-					else
-					{
-						if(b[3] == false)
-						{
-							//1010
-							s[0] = false;
-							s[1] = false;
-							return s;
-						}
-						else
-						{
-							//1011
-							s[0] = false;
-							s[1] = true;
-							return s;
-						}
-					}
-				}
-				else {
-					if(b[2] == false)
-					{
-						if(b[3] == false)
-						{
-							//1100
-							s[0] = false;
-							s[1] = true;
-							return s;
-						}
-						else
-						{
-							//1101
-							s[0] = false;
-							s[1] = false;
-							return s;
-						}
-					}
-					else
-					{
-						if(b[3] == false)
-						{
-							//1110
-							s[0] = false;
-							s[1] = false;
-							return s;
-						}
-						else
-						{
-							//1111
-							s[0] = true;
-							s[1] = true;
-							return s;
-						}
-					}
-				}
-			}
 	}
 
 /**
@@ -669,16 +388,23 @@ public class SDES {
         //Create byte[] for plain text
         byte[] plainBytes = msg.getBytes();
 
-        //Create byte[] for cipher text
-        byte[] cipher = new byte[plainBytes.length];
-
-        //Send Each byte of array to be encrypted and added to new array
-        for(int i = 0; i < plainBytes.length; i++)
-        {
-            cipher[i] = encryptByte(plainBytes[i]);
-        }
+        //Encrypt every byte with the current key, in place
+        engine.encrypt(key, plainBytes, 0, plainBytes.length, plainBytes, 0);
+        return plainBytes;
+    }
 
-        return cipher;
+    /**
+     * Encrypt the given message using SDES, converted to bytes with an explicit charset so every machine produces
+     * the same cipher text.
+     * @param msg The message to encrypt.
+     * @param charset The charset the message is converted to bytes with.
+     * @return An array of bytes representing the cipher text.
+     */
+    public byte[] encrypt(CharSequence msg, java.nio.charset.Charset charset)
+    {
+        byte[] plainBytes = msg.toString().getBytes(charset);
+        engine.encrypt(key, plainBytes, 0, plainBytes.length, plainBytes, 0);
+        return plainBytes;
     }
 
     /**
@@ -689,15 +415,7 @@ public class SDES {
      */
     public byte encryptByte(byte b)
     {
-        key1 = expPerm(key, epv1);
-        key2 = expPerm(key, epv2);     
-        boolean [] x = getByteToBool(b);       
-        boolean [] ip = expPerm(x, ipPerm);
-        boolean [] fk1 = f(ip, key1);
-        boolean [] fk2 = f((concat(rh(fk1), lh(fk1))), key2);
-        boolean [] ipInverse = expPerm(fk2, ipInversePerm);
-
-        return getBoolToByte(ipInverse);
+        return key.encryptByte(b);
     }
 
     /**
@@ -710,12 +428,7 @@ public class SDES {
     {
         // Returning array containing an array of bytes
         byte[] plain = new byte[cipher.length];
-
-        for(int i = 0; i < cipher.length; i++)
-        {
-            plain[i] = decryptByte(cipher[i]);            
-        }
-
+        engine.decrypt(key, cipher, 0, cipher.length, plain, 0);
         return plain;
     }
 
@@ -727,97 +440,109 @@ public class SDES {
      */
     public byte decryptByte(byte b)
     {
-        key1 = expPerm(key, epv1);
-        key2 = expPerm(key, epv2);     
-        boolean [] y = getByteToBool(b);   
-        boolean [] ip = expPerm(y, ipPerm);
-        boolean [] fk1 = f(ip, key1);
-        boolean [] fk2 = f((concat(rh(fk1), lh(fk1))), key2);
-        boolean [] ipInverse = expPerm(fk2, ipInversePerm);
-
-        return getBoolToByte(ipInverse);      
+        return key.decryptByte(b);
     }
 
-    /** 
-     * @author Dylan Chow
-     * Send the array, inp, to stdout as 1's and 0's.
+    /**
+     * Encrypt a range of bytes into an existing array, no array is allocated.
+     * @parameter src - the plain text
+     * @parameter srcOff - the index of the first byte to encrypt
+     * @parameter len - the number of bytes to encrypt
+     * @parameter dst - the array the cipher text is written to, may be src itself
+     * @parameter dstOff - the index in dst of the first cipher text byte
      */
-    public void show(boolean [] inp)
+    public void encrypt(byte[] src, int srcOff, int len, byte[] dst, int dstOff)
     {
-        for(int i = 0; i < 8;  i++)
-        {
-            if(inp[i] == true)
-                System.out.print(1);
-            else
-                System.out.print(0);
-        }
+        engine.encrypt(key, src, srcOff, len, dst, dstOff);
     }
 
     /**
-     * @author Dylan Chow
-     * Send the array, byteArray, to stdout.
+     * Decrypt a range of bytes into an existing array, no array is allocated.
+     * @parameter src - the cipher text
+     * @parameter srcOff - the index of the first byte to decrypt
+     * @parameter len - the number of bytes to decrypt
+     * @parameter dst - the array the plain text is written to, may be src itself
+     * @parameter dstOff - the index in dst of the first plain text byte
      */
-    public void show(byte [] byteArray)
+    public void decrypt(byte[] src, int srcOff, int len, byte[] dst, int dstOff)
     {
-        System.out.print("[");
+        engine.decrypt(key, src, srcOff, len, dst, dstOff);
+    }
 
-        for(int i = 0; i < byteArray.length-1; i++)
-        {
-            System.out.print(byteArray[i] + " , ");
-        }
+    /**
+     * Encrypt the remaining bytes of src into dst, heap or direct.
+     * @parameter src - the plain text, its position moves to its limit
+     * @parameter dst - the buffer the cipher text is written to
+     */
+    public void encrypt(java.nio.ByteBuffer src, java.nio.ByteBuffer dst)
+    {
+        key.encrypt(src, dst);
+    }
 
-        System.out.print(byteArray[byteArray.length-1] + "]");
-        System.out.println();
+    /**
+     * Decrypt the remaining bytes of src into dst, heap or direct.
+     * @parameter src - the cipher text, its position moves to its limit
+     * @parameter dst - the buffer the plain text is written to
+     */
+    public void decrypt(java.nio.ByteBuffer src, java.nio.ByteBuffer dst)
+    {
+        key.decrypt(src, dst);
     }
 
-    /** 
-     * @author Dylan Chow
-     * Given a byte, b, return a boolean array, bool, that represents that byte.
-     * @parameter b - byte
-     * @return bool - boolean array resulting from byte
+    /**
+     * Encrypt a whole file through memory mappings, a region at a time.
+     * @parameter in - the plain text file
+     * @parameter out - the file the cipher text is written to, created or replaced
+     * @return the number of bytes encrypted
      */
-    private boolean[] getByteToBool(byte b)
+    public long encryptFile(java.nio.file.Path in, java.nio.file.Path out) throws java.io.IOException
     {
-        BitSet bs = new BitSet(8);
-        boolean[] bool = new boolean[8];
+        return SDESFiles.encrypt(in, out, key);
+    }
 
-        for(int i = 0; i < 8; i++)
-        {
-            // Right bit shift
-            if(((b >> i) & 1) == 1)
-            {
-                bs.set(i);
-            }
-        }
+    /**
+     * Decrypt a whole file through memory mappings, a region at a time.
+     * @parameter in - the cipher text file
+     * @parameter out - the file the plain text is written to, created or replaced
+     * @return the number of bytes decrypted
+     */
+    public long decryptFile(java.nio.file.Path in, java.nio.file.Path out) throws java.io.IOException
+    {
+        return SDESFiles.decrypt(in, out, key);
+    }
 
-        for(int i = 0; i < 8; i++)
-        {
-            bool[i] = bs.get(i);
-        }
+    /** 
+     * @author Dylan Chow
+     * Send the array, inp, to stdout as 1's and 0's.
+     */
+    public void show(boolean [] inp)
+    {
+        //only the first 8 bits are shown, written in one call; a shorter array fails as it did bit by bit
+        if(inp.length < 8)
+            throw new ArrayIndexOutOfBoundsException("Index " + inp.length + " out of bounds for length " + inp.length);
 
-        return bool;
+        System.out.print(SDESCodec.toBits(java.util.Arrays.copyOf(inp, 8)));
     }
 
     /**
      * @author Dylan Chow
-     * Given an array of boolean, bool, return a byte, b, that represents 
-     * the array of booleans.
-     * @parameter bool - array of booleans
-     * @return b - byte
+     * Send the array, byteArray, to stdout.
      */
-    private byte getBoolToByte(boolean[] bool)
+    public void show(byte [] byteArray)
     {
-        int b = 0;
+        //build the whole line first so stdout is written once instead of once per byte
+        StringBuilder sb = new StringBuilder(byteArray.length * 7 + 2);
+        sb.append("[");
 
-        for(int i = 0; i < bool.length; i++)
+        for(int i = 0; i < byteArray.length; i++)
         {
-            if(bool[i] == true)
-                b = b + ((int) Math.pow(2, i));
+            if(i > 0)
+                sb.append(" , ");
+            sb.append(byteArray[i]);
         }
 
-        return (byte) b;        
+        sb.append("]");
+        System.out.println(sb);
     }
 
 }
-    
-    
@@ -0,0 +1,620 @@
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Differential and linear cryptanalysis of SDES, for studying the S-boxes, the round function and the whole cipher.
+ * Everything works on packed values and lookup tables, never on bit arrays, so even the 256x256 tables of the whole
+ * cipher take a few milliseconds, and the experiments run millions of plain texts in parallel through the key's
+ * encrypt table.
+ *
+ * A difference distribution table (DDT) holds at [a][b] the number of inputs x for which f(x) xor f(x xor a) is b.
+ * A linear approximation table (LAT) holds at [a][b] the number of inputs x for which the parity of x and a equals
+ * the parity of f(x) and b, minus half the number of inputs, so 0 means no bias and +-2^(n-1) a linear relation.
+ * The S-box and round function tables work on packed values as SDESBits defines them; the cipher tables and the
+ * experiments work on plain and cipher text byte values.
+ */
+public final class SDESAnalysis {
+
+    private static final int CHUNK = 1 << 16; // samples per parallel task in the experiments
+
+    private SDESAnalysis() {
+
+    }
+
+    /**
+     * @param f The output of the function for every input 0..2^n-1, n at most 16.
+     * @param outputBits The number of output bits, at most 16.
+     * @return The difference distribution table of f.
+     * @throws IllegalArgumentException
+     */
+    public static int[][] differenceTable(int[] f, int outputBits) throws IllegalArgumentException {
+
+        int inputs = checkFunction(f, outputBits);
+        int[][] ddt = new int[inputs][1 << outputBits];
+
+        for (int a = 0; a < inputs; a++) {
+
+            int[] row = ddt[a];
+
+            for (int x = 0; x < inputs; x++) {
+
+                row[f[x] ^ f[x ^ a]]++;
+
+            }
+
+        }
+
+        return ddt;
+
+    }
+
+    /**
+     * @param f The output of the function for every input 0..2^n-1, n at most 16.
+     * @param outputBits The number of output bits, at most 16.
+     * @return The linear approximation table of f, computed column by column with a fast Walsh-Hadamard transform.
+     * @throws IllegalArgumentException
+     */
+    public static int[][] linearTable(int[] f, int outputBits) throws IllegalArgumentException {
+
+        int inputs = checkFunction(f, outputBits);
+        int[][] lat = new int[inputs][1 << outputBits];
+        int[] w = new int[inputs];
+
+        for (int b = 0; b < (1 << outputBits); b++) {
+
+            for (int x = 0; x < inputs; x++) {
+
+                w[x] = (Integer.bitCount(f[x] & b) & 1) == 0 ? 1 : -1;
+
+            }
+
+            walshHadamard(w);
+
+            for (int a = 0; a < inputs; a++) {
+
+                lat[a][b] = w[a] / 2;
+
+            }
+
+        }
+
+        return lat;
+
+    }
+
+    /**
+     * @param spec The SDES variant.
+     * @return The difference distribution table of S0, 16x4.
+     */
+    public static int[][] s0DifferenceTable(SDESSpec spec) {
+
+        return differenceTable(spec.getS0(), 2);
+
+    }
+
+    /**
+     * @param spec The SDES variant.
+     * @return The difference distribution table of S1, 16x4.
+     */
+    public static int[][] s1DifferenceTable(SDESSpec spec) {
+
+        return differenceTable(spec.getS1(), 2);
+
+    }
+
+    /**
+     * @param spec The SDES variant.
+     * @return The linear approximation table of S0, 16x4.
+     */
+    public static int[][] s0LinearTable(SDESSpec spec) {
+
+        return linearTable(spec.getS0(), 2);
+
+    }
+
+    /**
+     * @param spec The SDES variant.
+     * @return The linear approximation table of S1, 16x4.
+     */
+    public static int[][] s1LinearTable(SDESSpec spec) {
+
+        return linearTable(spec.getS1(), 2);
+
+    }
+
+    /**
+     * @param spec The SDES variant.
+     * @param subkey The packed 8-bit subkey.
+     * @return The 4-bit output of the feistel function for every 4-bit right half.
+     */
+    public static int[] feistelFunction(SDESSpec spec, int subkey) {
+
+        int[] f = new int[16];
+
+        for (int x = 0; x < 16; x++) {
+
+            f[x] = spec.feistel(subkey, x);
+
+        }
+
+        return f;
+
+    }
+
+    /**
+     * @param spec The SDES variant.
+     * @param subkey The packed 8-bit subkey.
+     * @return The difference distribution table of the feistel function under subkey, 16x16. EP spreads the 4 input
+     * bits over 8, so the subkey decides which S-box inputs occur at all and the table depends on it, unlike the
+     * table of a single S-box.
+     */
+    public static int[][] roundDifferenceTable(SDESSpec spec, int subkey) {
+
+        return differenceTable(feistelFunction(spec, subkey), 4);
+
+    }
+
+    /**
+     * @param spec The SDES variant.
+     * @param subkey The packed 8-bit subkey.
+     * @return The linear approximation table of the feistel function under subkey, 16x16.
+     */
+    public static int[][] roundLinearTable(SDESSpec spec, int subkey) {
+
+        return linearTable(feistelFunction(spec, subkey), 4);
+
+    }
+
+    /**
+     * @param key The key.
+     * @return The difference distribution table of the whole cipher under key, 256x256 over byte values.
+     */
+    public static int[][] cipherDifferenceTable(SDESKey key) {
+
+        return differenceTable(toInts(key.table(true)), 8);
+
+    }
+
+    /**
+     * @param key The key.
+     * @return The linear approximation table of the whole cipher under key, 256x256 over byte values.
+     */
+    public static int[][] cipherLinearTable(SDESKey key) {
+
+        return linearTable(toInts(key.table(true)), 8);
+
+    }
+
+    /**
+     * @param cascade A compiled multi-stage or multi-round variant.
+     * @return The difference distribution table of the cascade, 256x256 over byte values.
+     */
+    public static int[][] cipherDifferenceTable(SDESCascade cascade) {
+
+        return differenceTable(toInts(cascade.table(true)), 8);
+
+    }
+
+    /**
+     * @param cascade A compiled multi-stage or multi-round variant.
+     * @return The linear approximation table of the cascade, 256x256 over byte values.
+     */
+    public static int[][] cipherLinearTable(SDESCascade cascade) {
+
+        return linearTable(toInts(cascade.table(true)), 8);
+
+    }
+
+    /**
+     * @param keys The keys to sum over, such as the 1024 keys of an SDESKeyCache after preloadAll.
+     * @return The sum of the cipher difference distribution tables of all keys, computed in parallel. Divided by
+     * 256 times the number of keys, an entry is the probability of the differential over a random key.
+     */
+    public static long[][] cipherDifferenceTable(SDESKey[] keys) {
+
+        return IntStream.range(0, keys.length).parallel()
+                .mapToObj(i -> cipherDifferenceTable(keys[i]))
+                .collect(() -> new long[256][256], SDESAnalysis::add, SDESAnalysis::add);
+
+    }
+
+    /**
+     * @param key The secret key of the oracle.
+     * @param difference The xor difference of every chosen plain text pair.
+     * @param pairs The number of pairs to encrypt.
+     * @param seed The seed of the random plain texts; equal seeds give equal counts on any number of threads.
+     * @return The number of pairs giving each cipher text difference; divided by pairs, the empirical DDT row.
+     */
+    public static long[] differentialExperiment(SDESKey key, int difference, long pairs, long seed) {
+
+        byte[] e = key.table(true);
+
+        return sample(pairs, seed, (counts, random, n) -> {
+
+            for (int i = 0; i < n; i++) {
+
+                int p = random.nextInt(256);
+                counts[(e[p] ^ e[p ^ (difference & 0xFF)]) & 0xFF]++;
+
+            }
+
+        }, 256);
+
+    }
+
+    /**
+     * @param key The secret key of the oracle.
+     * @param inputMask The mask of the plain text bits.
+     * @param outputMask The mask of the cipher text bits.
+     * @param samples The number of random known plain texts.
+     * @param seed The seed of the random plain texts.
+     * @return The empirical bias of the approximation, the fraction of samples where the two parities agree minus
+     * one half.
+     */
+    public static double linearExperiment(SDESKey key, int inputMask, int outputMask, long samples, long seed) {
+
+        byte[] e = key.table(true);
+        long[] agree = sample(samples, seed, (counts, random, n) -> {
+
+            for (int i = 0; i < n; i++) {
+
+                int p = random.nextInt(256);
+                counts[(Integer.bitCount((p & inputMask) ^ (e[p] & 0xFF & outputMask)) & 1) ^ 1]++;
+
+            }
+
+        }, 2);
+
+        return samples == 0 ? 0 : (double) agree[1] / samples - 0.5;
+
+    }
+
+    /**
+     * @param key The secret key of the oracle.
+     * @param difference The xor difference of every chosen plain text pair.
+     * @param pairs The number of pairs to encrypt.
+     * @param seed The seed of the random plain texts.
+     * @return For every guess of the last round subkey k2, the number of pairs it explains.
+     * Differential attack on the last round. The left half entering the last round is the right half of IP(plain),
+     * so undoing the last round with the right k2 always reproduces its difference, while a wrong guess does so only
+     * as often as the round DDT allows. The pairs are first counted by the cipher text halves that matter, so scoring
+     * all 256 guesses costs the same however many pairs were encrypted.
+     */
+    public static long[] differentialKeyRecovery(SDESKey key, int difference, long pairs, long seed) {
+
+        SDESSpec spec = key.getSpec();
+        byte[] e = key.table(true);
+        int[] unwind = unwind(spec);
+        int[] ip = permutationTable(spec.getIp());
+
+        //bins of (right half of c, right half of c', left half difference xor expected difference)
+        long[] bins = sample(pairs, seed, (counts, random, n) -> {
+
+            for (int i = 0; i < n; i++) {
+
+                int p = random.nextInt(256);
+                int q = p ^ (difference & 0xFF);
+                int c = unwind[e[p] & 0xFF];
+                int d = unwind[e[q] & 0xFF];
+                int expected = (ip[reverse(p)] ^ ip[reverse(q)]) & 0xF;
+                counts[(c & 0xF) << 8 | (d & 0xF) << 4 | ((c ^ d) >>> 4 ^ expected)]++;
+
+            }
+
+        }, 4096);
+
+        long[] scores = new long[256];
+
+        for (int g = 0; g < 256; g++) {
+
+            int[] f = feistelFunction(spec, g);
+
+            for (int bin = 0; bin < 4096; bin++) {
+
+                if (bins[bin] != 0 && (f[bin >>> 8] ^ f[(bin >>> 4) & 0xF]) == (bin & 0xF)) {
+
+                    scores[g] += bins[bin];
+
+                }
+
+            }
+
+        }
+
+        return scores;
+
+    }
+
+    /**
+     * @param key The secret key of the oracle.
+     * @param mask The mask of the 4 bits of the left half entering the last round that the approximation uses.
+     * @param samples The number of random known plain texts.
+     * @param seed The seed of the random plain texts.
+     * @return For every guess of the last round subkey k2, the number of samples for which the masked parity of the
+     * undone left half matches the masked parity of the right half of IP(plain). The right guess matches every
+     * sample; wrong guesses stay near half as far as the round LAT allows.
+     * Linear attack on the last round (Matsui's algorithm 2), with the samples counted by the right half of the
+     * cipher text and the parity of the known bits before the guesses are scored.
+     * @throws IllegalArgumentException
+     */
+    public static long[] linearKeyRecovery(SDESKey key, int mask, long samples, long seed) throws IllegalArgumentException {
+
+        //check for masks reaching past the 4 bits, which would mix the left half of IP(p) into the parity
+        if (mask < 0 || mask > 0xF) {
+
+            throw SDESMetrics.error(new IllegalArgumentException("Mask (" + mask + ") is out of bounds (0-15)"));
+
+        }
+
+        SDESSpec spec = key.getSpec();
+        byte[] e = key.table(true);
+        int[] unwind = unwind(spec);
+        int[] ip = permutationTable(spec.getIp());
+
+        //bins of (right half of c, parity of the masked left half of c xor the right half of IP(p))
+        long[] bins = sample(samples, seed, (counts, random, n) -> {
+
+            for (int i = 0; i < n; i++) {
+
+                int p = random.nextInt(256);
+                int c = unwind[e[p] & 0xFF];
+                counts[(c & 0xF) << 1 | (Integer.bitCount(((c >>> 4) ^ ip[reverse(p)]) & mask) & 1)]++;
+
+            }
+
+        }, 32);
+
+        long[] scores = new long[256];
+
+        for (int g = 0; g < 256; g++) {
+
+            int[] f = feistelFunction(spec, g);
+
+            for (int r = 0; r < 16; r++) {
+
+                scores[g] += bins[r << 1 | (Integer.bitCount(f[r] & mask) & 1)];
+
+            }
+
+        }
+
+        return scores;
+
+    }
+
+    /**
+     * @param spec The SDES variant.
+     * @param scores The score of every last round subkey guess, as returned by a key recovery experiment.
+     * @return Every 10-bit key whose k2 has the highest score, 4 per subkey in standard SDES, to be confirmed with a known
+     * plain text pair.
+     */
+    public static int[] candidateKeys(SDESSpec spec, long[] scores) {
+
+        long best = Long.MIN_VALUE;
+
+        for (long s : scores) {
+
+            best = Math.max(best, s);
+
+        }
+
+        long top = best;
+
+        return IntStream.range(0, 1024).filter(k -> scores[spec.key2(k)] == top).toArray();
+
+    }
+
+    /**
+     * @param counts The counts a task adds its samples to.
+     * @param random The task's generator.
+     * @param n The number of samples to take.
+     */
+    private interface Sampler {
+
+        void run(long[] counts, SplittableRandom random, int n);
+
+    }
+
+    /**
+     * @param samples The total number of samples.
+     * @param seed The seed; every chunk of samples has its own generator derived from it, so the result does not
+     * depend on how the chunks are spread over threads.
+     * @param sampler Takes a chunk of samples.
+     * @param bins The number of counters.
+     * @return The counters summed over all chunks.
+     */
+    private static long[] sample(long samples, long seed, Sampler sampler, int bins) {
+
+        if (samples < 0) {
+
+            throw SDESMetrics.error(new IllegalArgumentException("Number of samples (" + samples + ") must not be negative"));
+
+        }
+
+        long chunks = (samples + CHUNK - 1) / CHUNK;
+
+        return LongStream.range(0, chunks).parallel()
+                .mapToObj(c -> {
+
+                    long[] counts = new long[bins];
+                    sampler.run(counts, new SplittableRandom(seed + c * 0x9E3779B97F4A7C15L), (int) Math.min(CHUNK, samples - c * CHUNK));
+
+                    return counts;
+
+                })
+                .reduce(SDESAnalysis::sum)
+                .orElseGet(() -> new long[bins]);
+
+    }
+
+    /**
+     * @param spec The SDES variant.
+     * @return For every cipher byte, the packed block after the last fk, that is before IP inverse.
+     */
+    private static int[] unwind(SDESSpec spec) {
+
+        int[] result = new int[256];
+
+        for (int x = 0; x < 256; x++) {
+
+            result[reverse(spec.getIpInverse().apply(x))] = x;
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * @param p An 8-bit permutation.
+     * @return Its output for every packed input, indexed by the input.
+     */
+    private static int[] permutationTable(SDESBits.Permutation p) {
+
+        int[] result = new int[256];
+
+        for (int x = 0; x < 256; x++) {
+
+            result[x] = p.apply(x);
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * @param w The vector to transform in place, its length a power of two.
+     */
+    private static void walshHadamard(int[] w) {
+
+        for (int h = 1; h < w.length; h <<= 1) {
+
+            for (int i = 0; i < w.length; i += h << 1) {
+
+                for (int j = i; j < i + h; j++) {
+
+                    int a = w[j];
+                    int b = w[j + h];
+                    w[j] = a + b;
+                    w[j + h] = a - b;
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * @param f The function table.
+     * @param outputBits The number of output bits.
+     * @return The number of inputs.
+     * @throws IllegalArgumentException If f is not a function from n bits to outputBits bits.
+     */
+    private static int checkFunction(int[] f, int outputBits) throws IllegalArgumentException {
+
+        if (Integer.bitCount(f.length) != 1 || f.length > 1 << 16 || outputBits < 1 || outputBits > 16) {
+
+            throw SDESMetrics.error(new IllegalArgumentException("Function must have 2^n entries for n at most 16 (Size of f: " + f.length + ") and 1-16 output bits (outputBits: " + outputBits + ")"));
+
+        }
+
+        for (int x = 0; x < f.length; x++) {
+
+            if (f[x] < 0 || f[x] >= 1 << outputBits) {
+
+                throw SDESMetrics.error(new IllegalArgumentException("Value at index (" + x + ") of f (f[" + x + "] = " + f[x] + ") does not fit in " + outputBits + " bits"));
+
+            }
+
+        }
+
+        return f.length;
+
+    }
+
+    /**
+     * @param table A byte table.
+     * @return The table with every entry as an unsigned int.
+     */
+    private static int[] toInts(byte[] table) {
+
+        int[] result = new int[table.length];
+
+        for (int i = 0; i < table.length; i++) {
+
+            result[i] = table[i] & 0xFF;
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * @param b A byte value.
+     * @return The packed block SDES makes of it, its bits in reverse order.
+     */
+    private static int reverse(int b) {
+
+        return Integer.reverse(b) >>> 24;
+
+    }
+
+    /**
+     * @param a The counters to add to.
+     * @param b The counters to add.
+     * @return a.
+     */
+    private static long[] sum(long[] a, long[] b) {
+
+        for (int i = 0; i < a.length; i++) {
+
+            a[i] += b[i];
+
+        }
+
+        return a;
+
+    }
+
+    /**
+     * @param sum The table to add to.
+     * @param t The table to add.
+     */
+    private static void add(long[][] sum, int[][] t) {
+
+        for (int a = 0; a < sum.length; a++) {
+
+            for (int b = 0; b < sum[a].length; b++) {
+
+                sum[a][b] += t[a][b];
+
+            }
+
+        }
+
+    }
+
+    /**
+     * @param sum The table to add to.
+     * @param t The table to add.
+     */
+    private static void add(long[][] sum, long[][] t) {
+
+        for (int a = 0; a < sum.length; a++) {
+
+            for (int b = 0; b < sum[a].length; b++) {
+
+                sum[a][b] += t[a][b];
+
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,378 @@
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Encrypts or decrypts many small messages, such as IDs and short strings, into one contiguous arena with an index of
+ * where each result starts. Message i occupies getArena()[offset(i), offset(i) + length(i)), and getOffsets() holds
+ * size() + 1 entries, the last one being the end of the arena. However many messages are added, the batch holds two
+ * arrays, which only grow and are kept by clear(), so a reused batch adds no garbage at all.
+ *
+ * Strings are encoded straight into the arena. For UTF-8, US-ASCII and ISO-8859-1, a run of ASCII characters is
+ * encoded and encrypted in the same loop, one table read per character; other characters and charsets go through
+ * a CharsetEncoder that replaces what it cannot map, as String.getBytes(Charset) does. Like that encoder, a batch is
+ * not thread safe.
+ */
+public final class SDESBatch {
+
+    private final SDESKey key;
+    private final boolean encrypt; // true to encrypt what is added, false to decrypt it
+    private final Charset charset;
+    private final boolean asciiCompatible; // true if every char below 0x80 encodes as that single byte
+    private CharsetEncoder encoder; // created the first time a message needs it
+    private byte[] arena;
+    private int[] offsets; // offsets[i] is where message i starts, offsets[size] where the next one will
+    private int size;
+
+    /**
+     * @param key The key to transform with.
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param charset The charset strings are converted with.
+     */
+    private SDESBatch(SDESKey key, boolean encrypt, Charset charset) {
+
+        this.key = Objects.requireNonNull(key, "key");
+        this.encrypt = encrypt;
+        this.charset = Objects.requireNonNull(charset, "charset");
+        this.asciiCompatible = charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII) || charset.equals(StandardCharsets.ISO_8859_1);
+        this.arena = new byte[1024];
+        this.offsets = new int[65];
+
+    }
+
+    /**
+     * @param key The key to encrypt with.
+     * @return A batch that encrypts every message added to it, converting strings with UTF-8.
+     */
+    public static SDESBatch encrypting(SDESKey key) {
+
+        return new SDESBatch(key, true, StandardCharsets.UTF_8);
+
+    }
+
+    /**
+     * @param key The key to encrypt with.
+     * @param charset The charset strings are converted with.
+     * @return A batch that encrypts every message added to it.
+     */
+    public static SDESBatch encrypting(SDESKey key, Charset charset) {
+
+        return new SDESBatch(key, true, charset);
+
+    }
+
+    /**
+     * @param key The key to decrypt with.
+     * @return A batch that decrypts every message added to it, whose getString decodes UTF-8.
+     */
+    public static SDESBatch decrypting(SDESKey key) {
+
+        return new SDESBatch(key, false, StandardCharsets.UTF_8);
+
+    }
+
+    /**
+     * @param key The key to decrypt with.
+     * @param charset The charset getString decodes with.
+     * @return A batch that decrypts every message added to it.
+     */
+    public static SDESBatch decrypting(SDESKey key, Charset charset) {
+
+        return new SDESBatch(key, false, charset);
+
+    }
+
+    /**
+     * @param msg The message to encode and transform.
+     * @return The index of the message in the batch.
+     */
+    public int add(CharSequence msg) {
+
+        int len = msg.length();
+        int pos = offsets[size];
+        byte[] table = key.table(encrypt);
+        long start = SDESMetrics.ENABLED ? System.nanoTime() : 0L;
+        int i = 0;
+
+        if (asciiCompatible) {
+
+            ensureArena(len);
+            byte[] a = arena;
+
+            //encode and transform in one loop until the first char that is not ASCII
+            for (; i < len; i++) {
+
+                char c = msg.charAt(i);
+
+                if (c >= 0x80) {
+
+                    break;
+
+                }
+
+                a[pos + i] = table[c];
+
+            }
+
+        }
+
+        int end = i < len ? encodeRest(msg, i, pos + i, table) : pos + len;
+
+        if (SDESMetrics.ENABLED) {
+
+            SDESMetrics.record(encrypt, end - pos, start);
+
+        }
+
+        return append(end);
+
+    }
+
+    /**
+     * @param src The bytes of the message.
+     * @param off The index of the first byte.
+     * @param len The number of bytes.
+     * @return The index of the message in the batch.
+     * @throws IndexOutOfBoundsException
+     */
+    public int add(byte[] src, int off, int len) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(off, len, src.length);
+        ensureArena(len);
+        int pos = offsets[size];
+        key.transform(encrypt, src, off, arena, pos, len);
+
+        return append(pos + len);
+
+    }
+
+    /**
+     * @param src The buffer holding the messages back to back.
+     * @param bounds Where each message starts in src, followed by where the last one ends, so count + 1 ascending
+     * entries.
+     * @param count The number of messages.
+     * @return The index in the batch of the first message added.
+     * @throws IllegalArgumentException If the bounds are not ascending.
+     * @throws IndexOutOfBoundsException
+     * Add messages that already share one buffer. The bytes from the first start to the last end are transformed in
+     * a single call and the bounds are copied into the index, shifted to where the messages land in the arena.
+     */
+    public int addAll(byte[] src, int[] bounds, int count) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(0, count + 1, bounds.length);
+
+        //check for bounds that would give a message a negative length
+        for (int i = 0; i < count; i++) {
+
+            if (bounds[i] > bounds[i + 1]) {
+
+                throw SDESMetrics.error(new IllegalArgumentException("Bounds are not ascending (bounds[" + i + "] = " + bounds[i] + ", bounds[" + (i + 1) + "] = " + bounds[i + 1] + ")"));
+
+            }
+
+        }
+
+        int first = size;
+        int len = bounds[count] - bounds[0];
+        Objects.checkFromIndexSize(bounds[0], len, src.length);
+        ensureArena(len);
+        ensureOffsets(count);
+
+        int pos = offsets[size];
+        int shift = pos - bounds[0];
+        key.transform(encrypt, src, bounds[0], arena, pos, len);
+
+        for (int i = 1; i <= count; i++) {
+
+            offsets[size + i] = bounds[i] + shift;
+
+        }
+
+        size += count;
+
+        return first;
+
+    }
+
+    /**
+     * @return The number of messages in the batch.
+     */
+    public int size() {
+
+        return size;
+
+    }
+
+    /**
+     * @return The number of bytes used in the arena, the total length of all messages.
+     */
+    public int byteSize() {
+
+        return offsets[size];
+
+    }
+
+    /**
+     * @return The arena itself, not a copy; only its first byteSize() bytes belong to the batch. A later add may
+     * replace it with a larger array.
+     */
+    public byte[] getArena() {
+
+        return arena;
+
+    }
+
+    /**
+     * @return The index itself, not a copy; only its first size() + 1 entries belong to the batch. A later add may
+     * replace it with a larger array.
+     */
+    public int[] getOffsets() {
+
+        return offsets;
+
+    }
+
+    /**
+     * @param i The index of a message.
+     * @return Where the message starts in the arena.
+     * @throws IndexOutOfBoundsException
+     */
+    public int offset(int i) throws IndexOutOfBoundsException {
+
+        return offsets[Objects.checkIndex(i, size)];
+
+    }
+
+    /**
+     * @param i The index of a message.
+     * @return The length of the message in bytes.
+     * @throws IndexOutOfBoundsException
+     */
+    public int length(int i) throws IndexOutOfBoundsException {
+
+        return offsets[Objects.checkIndex(i, size) + 1] - offsets[i];
+
+    }
+
+    /**
+     * @param i The index of a message.
+     * @return A copy of the message's bytes.
+     * @throws IndexOutOfBoundsException
+     */
+    public byte[] get(int i) throws IndexOutOfBoundsException {
+
+        return Arrays.copyOfRange(arena, offset(i), offsets[i + 1]);
+
+    }
+
+    /**
+     * @param i The index of a message.
+     * @return The message decoded with the batch's charset, meant for the plain text of a decrypting batch.
+     * @throws IndexOutOfBoundsException
+     */
+    public String getString(int i) throws IndexOutOfBoundsException {
+
+        return new String(arena, offset(i), length(i), charset);
+
+    }
+
+    /**
+     * Remove every message, keeping the arrays for the next batch.
+     */
+    public void clear() {
+
+        size = 0;
+
+    }
+
+    /**
+     * @param msg The message.
+     * @param from The index of the first char still to encode.
+     * @param pos Where its bytes go in the arena.
+     * @param table The table to transform them with.
+     * @return The end of the message in the arena.
+     */
+    private int encodeRest(CharSequence msg, int from, int pos, byte[] table) {
+
+        if (encoder == null) {
+
+            encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        }
+
+        int max = (int) Math.ceil((msg.length() - from) * (double) encoder.maxBytesPerChar());
+        ensureArena(pos - offsets[size] + max);
+
+        ByteBuffer out = ByteBuffer.wrap(arena, pos, max);
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(msg, from, msg.length()), out, true);
+        encoder.flush(out);
+
+        int end = out.position();
+
+        for (int j = pos; j < end; j++) {
+
+            arena[j] = table[arena[j] & 0xFF];
+
+        }
+
+        return end;
+
+    }
+
+    /**
+     * @param end The end of the message just written to the arena.
+     * @return The index of the message.
+     */
+    private int append(int end) {
+
+        ensureOffsets(1);
+        offsets[++size] = end;
+
+        return size - 1;
+
+    }
+
+    /**
+     * @param len The number of bytes about to be written after the last message.
+     * Grow the arena, at least doubling it, if they do not fit.
+     */
+    private void ensureArena(int len) {
+
+        int needed = offsets[size] + len;
+
+        //check for a batch that would outgrow an array
+        if (needed < 0 || needed > Integer.MAX_VALUE - 8) {
+
+            throw new IllegalStateException("Batch is larger than an array can hold (" + ((long) offsets[size] + len) + " bytes)");
+
+        }
+
+        if (needed > arena.length) {
+
+            arena = Arrays.copyOf(arena, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, 2L * arena.length)));
+
+        }
+
+    }
+
+    /**
+     * @param count The number of messages about to be added.
+     * Grow the index, at least doubling it, if they do not fit.
+     */
+    private void ensureOffsets(int count) {
+
+        if (size + count + 1 > offsets.length) {
+
+            offsets = Arrays.copyOf(offsets, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(size + count + 1L, 2L * offsets.length)));
+
+        }
+
+    }
+
+}
@@ -0,0 +1,263 @@
+/**
+ * Bit helpers for SDES working on bits packed into an int instead of boolean arrays. A packed value of width n
+ * holds the bit array element at index 0 in bit n-1 and the element at index n-1 in bit 0, so lh/rh/concat keep
+ * the same meaning as the boolean[] versions in SDES. Nothing here allocates, which keeps the round function in
+ * registers.
+ */
+public final class SDESBits {
+
+    public static final Permutation IP = new Permutation(SDES.IP_PERM, 8);
+    public static final Permutation IP_INVERSE = new Permutation(SDES.IP_INVERSE_PERM, 8);
+    public static final Permutation EP = new Permutation(SDES.EP_PERM, 4);
+    public static final Permutation P4 = new Permutation(SDES.P4_SELECT, 4);
+    public static final Permutation EPV1 = new Permutation(SDES.EPV1, 10);
+    public static final Permutation EPV2 = new Permutation(SDES.EPV2, 10);
+
+    static final int[] S0 = {1, 3, 0, 2, 3, 1, 2, 0, 0, 3, 2, 1, 1, 3, 3, 2}; // S0 output for each 4-bit input
+    static final int[] S1 = {0, 2, 1, 0, 2, 1, 3, 3, 3, 2, 0, 1, 1, 0, 0, 3}; // S1 output for each 4-bit input
+
+    private SDESBits() {
+
+    }
+
+    /**
+     * @param inp A packed bit array.
+     * @param width The number of bits in inp.
+     * @return The left half of inp, L(x).
+     */
+    public static int lh(int inp, int width) {
+
+        return inp >>> (width - width / 2);
+
+    }
+
+    /**
+     * @param inp A packed bit array.
+     * @param width The number of bits in inp.
+     * @return The right half of inp, R(x).
+     */
+    public static int rh(int inp, int width) {
+
+        return inp & ((1 << (width - width / 2)) - 1);
+
+    }
+
+    /**
+     * @param x First of the two packed operands.
+     * @param y Second of the two packed operands.
+     * @return x xor y
+     */
+    public static int xor(int x, int y) {
+
+        return x ^ y;
+
+    }
+
+    /**
+     * @param x The packed bit array that will be the left part of the result.
+     * @param y The packed bit array that will be the right part of the result.
+     * @param yWidth The number of bits in y.
+     * @return The concatenation x || y
+     */
+    public static int concat(int x, int y, int yWidth) {
+
+        return (x << yWidth) | y;
+
+    }
+
+    /**
+     * @param inp A bit array represented as booleans, true=1, false=0, at most 31 bits long.
+     * @return The bits packed into an int.
+     * @throws IllegalArgumentException
+     */
+    public static int toInt(boolean[] inp) throws IllegalArgumentException {
+
+        //check for invalid length
+        if (inp.length > 31) {
+
+            throw SDESMetrics.error(new IllegalArgumentException("Bit array is longer than 31 bits (Size of inp: " + inp.length + ")"));
+
+        }
+
+        int result = 0;
+
+        for (int i = 0; i < inp.length; i++) {
+
+            result = (result << 1) | (inp[i] ? 1 : 0);
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * @param inp A packed bit array.
+     * @param width The number of bits to unpack, the low width bits of inp.
+     * @return The bits as a boolean array.
+     */
+    public static boolean[] toBits(int inp, int width) {
+
+        boolean[] result = new boolean[width];
+
+        for (int i = 0; i < width; i++) {
+
+            result[i] = ((inp >>> (width - 1 - i)) & 1) == 1;
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * @param a A packed 4-bit S0 input.
+     * @return The packed 2-bit S0 output.
+     */
+    public static int s0(int a) {
+
+        return S0[a];
+
+    }
+
+    /**
+     * @param b A packed 4-bit S1 input.
+     * @return The packed 2-bit S1 output.
+     */
+    public static int s1(int b) {
+
+        return S1[b];
+
+    }
+
+    /**
+     * @param k A packed 8-bit subkey.
+     * @param x A packed 4-bit right half.
+     * @return The packed 4-bit output of the standard SDES feistel function.
+     */
+    public static int feistel(int k, int x) {
+
+        return SDESSpec.STANDARD.feistel(k, x);
+
+    }
+
+    /**
+     * @param x A packed 8-bit block.
+     * @param k A packed 8-bit subkey.
+     * @return The packed 8-bit result of the standard fk.
+     */
+    public static int f(int x, int k) {
+
+        return SDESSpec.STANDARD.f(x, k);
+
+    }
+
+    /**
+     * @param b A single byte of plain text.
+     * @param key1 The packed k1 subkey.
+     * @param key2 The packed k2 subkey.
+     * @return The byte encrypted with the standard SDES rounds.
+     */
+    public static byte encryptByte(byte b, int key1, int key2) {
+
+        return SDESSpec.STANDARD.encryptByte(b, key1, key2);
+
+    }
+
+    /**
+     * An expansion and/or permutation and/or selection vector compiled for packed bit arrays. Every possible input
+     * value is run through the vector once, so applying it is a single array read.
+     */
+    public static final class Permutation {
+
+        private final int[] vector; // the vector this was compiled from
+        private final int[] table; // output for every possible input value
+        private final int inputWidth;
+        private final int outputWidth;
+
+        /**
+         * @param epv An expansion/permutation/selection vector, as for SDES.expPerm.
+         * @param inputWidth The number of bits in the input, at most 16.
+         * @throws IllegalArgumentException
+         */
+        public Permutation(int[] epv, int inputWidth) throws IllegalArgumentException {
+
+            //check for widths that cannot be tabulated or packed
+            if (inputWidth < 1 || inputWidth > 16 || epv.length > 31) {
+
+                throw SDESMetrics.error(new IllegalArgumentException("Input width (" + inputWidth + ") must be 1-16 and epv (Size of epv: " + epv.length + ") at most 31 long"));
+
+            }
+
+            //check for invalid indices
+            for (int i = 0; i < epv.length; i++) {
+
+                if (epv[i] < 0 || epv[i] > (inputWidth - 1)) {
+
+                    throw SDESMetrics.error(new IllegalArgumentException("Value at index (" + i + ") of epv (epv[" + i + "] = " + epv[i] + ") is out of bounds for an input of " + inputWidth + " bits"));
+
+                }
+
+            }
+
+            this.vector = epv.clone();
+            this.inputWidth = inputWidth;
+            this.outputWidth = epv.length;
+            this.table = new int[1 << inputWidth];
+
+            for (int inp = 0; inp < table.length; inp++) {
+
+                int result = 0;
+
+                for (int i = 0; i < epv.length; i++) {
+
+                    result = (result << 1) | ((inp >>> (inputWidth - 1 - epv[i])) & 1);
+
+                }
+
+                table[inp] = result;
+
+            }
+
+        }
+
+        /**
+         * @param inp A packed bit array of inputWidth bits.
+         * @return The permuted/expanded/selected packed bit array.
+         */
+        public int apply(int inp) {
+
+            return table[inp];
+
+        }
+
+        /**
+         * @return The number of bits in the input.
+         */
+        public int getInputWidth() {
+
+            return inputWidth;
+
+        }
+
+        /**
+         * @return The number of bits in the output.
+         */
+        public int getOutputWidth() {
+
+            return outputWidth;
+
+        }
+
+        /**
+         * @return A copy of the expansion/permutation/selection vector.
+         */
+        public int[] getVector() {
+
+            return vector.clone();
+
+        }
+
+    }
+
+}
@@ -0,0 +1,324 @@
+import java.util.Objects;
+
+/**
+ * Bitsliced SDES. Bit i of 64 different bytes is packed into one long, the slice for bit i, so every bitwise
+ * operation on the slices runs one step of the cipher on 64 bytes at once. Permutations only reorder the slices,
+ * the subkeys are xored in as all-zero or all-one slices, and each S-box output bit is a tree of multiplexers over
+ * the four input slices, built from the spec's S-box table. Nothing is looked up by data value, so the time taken
+ * does not depend on the plain text or the key.
+ */
+final class SDESBitslicedEngine implements SDESEngines.Unmetered {
+
+    private volatile Circuit circuit; // the circuit of the spec used most recently
+
+    @Override
+    public String getName() {
+
+        return "bitsliced";
+
+    }
+
+    @Override
+    public void encrypt(SDESKey key, byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+        long start = SDESMetrics.ENABLED ? System.nanoTime() : 0L;
+        transform(key, true, src, srcOff, len, dst, dstOff);
+
+        if (SDESMetrics.ENABLED) {
+
+            SDESMetrics.record(true, len, start);
+
+        }
+
+    }
+
+    @Override
+    public void decrypt(SDESKey key, byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+        long start = SDESMetrics.ENABLED ? System.nanoTime() : 0L;
+        transform(key, false, src, srcOff, len, dst, dstOff);
+
+        if (SDESMetrics.ENABLED) {
+
+            SDESMetrics.record(false, len, start);
+
+        }
+
+    }
+
+    @Override
+    public void transform(SDESKey key, boolean encrypt, byte[] src, int srcOff, int len, byte[] dst, int dstOff) {
+
+        Circuit c = circuit(key.getSpec());
+
+        if (encrypt) {
+
+            run(c, c.encryptIn, c.encryptOut, slices(key.getKey1()), slices(key.getKey2()), src, srcOff, len, dst, dstOff);
+
+        } else {
+
+            //undo the final permutation, run the rounds with the subkeys swapped, then undo the initial permutation
+            run(c, c.decryptIn, c.decryptOut, slices(key.getKey2()), slices(key.getKey1()), src, srcOff, len, dst, dstOff);
+
+        }
+
+    }
+
+    /**
+     * @param spec The SDES variant.
+     * @return The compiled circuit of spec, reusing the last one if it was for the same spec.
+     */
+    private Circuit circuit(SDESSpec spec) {
+
+        Circuit c = circuit;
+
+        if (c == null || c.spec != spec) {
+
+            c = new Circuit(spec);
+            circuit = c;
+
+        }
+
+        return c;
+
+    }
+
+    /**
+     * @param subkey An 8-bit subkey.
+     * @return Each subkey bit as a slice, all ones for 1 and all zeros for 0.
+     */
+    private static long[] slices(boolean[] subkey) {
+
+        long[] result = new long[subkey.length];
+
+        for (int j = 0; j < subkey.length; j++) {
+
+            result[j] = subkey[j] ? -1L : 0L;
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * @param c The compiled circuit.
+     * @param in The permutation applied to the input slices.
+     * @param out The permutation applied to the output slices.
+     * @param first The subkey slices of the first round.
+     * @param second The subkey slices of the second round.
+     * @param src The bytes to transform.
+     * @param srcOff The index of the first byte.
+     * @param len The number of bytes.
+     * @param dst The array to write the result to.
+     * @param dstOff The index in dst of the first result byte.
+     */
+    private static void run(Circuit c, int[] in, int[] out, long[] first, long[] second, byte[] src, int srcOff, int len, byte[] dst, int dstOff) {
+
+        long[] x = new long[8]; // bit i of every byte in the batch
+        long[] block = new long[8];
+
+        for (int base = 0; base < len; base += 64) {
+
+            int n = Math.min(64, len - base);
+
+            //transpose up to 64 bytes into 8 slices, byte t is bit t of every slice
+            for (int i = 0; i < 8; i++) {
+
+                x[i] = 0;
+
+            }
+
+            for (int t = 0; t < n; t++) {
+
+                int b = src[srcOff + base + t] & 0xFF;
+
+                for (int i = 0; i < 8; i++) {
+
+                    x[i] |= (long) ((b >>> i) & 1) << t;
+
+                }
+
+            }
+
+            for (int j = 0; j < 8; j++) {
+
+                block[j] = x[in[j]];
+
+            }
+
+            round(c, block, first);
+
+            //swap the halves
+            for (int j = 0; j < 4; j++) {
+
+                long t = block[j];
+                block[j] = block[j + 4];
+                block[j + 4] = t;
+
+            }
+
+            round(c, block, second);
+
+            for (int i = 0; i < 8; i++) {
+
+                x[i] = block[out[i]];
+
+            }
+
+            //transpose back
+            for (int t = 0; t < n; t++) {
+
+                int b = 0;
+
+                for (int i = 0; i < 8; i++) {
+
+                    b |= (int) ((x[i] >>> t) & 1) << i;
+
+                }
+
+                dst[dstOff + base + t] = (byte) b;
+
+            }
+
+        }
+
+    }
+
+    /**
+     * @param c The compiled circuit.
+     * @param block The 8 block slices, the left half is replaced by L xor F(R, k).
+     * @param k The 8 subkey slices.
+     */
+    private static void round(Circuit c, long[] block, long[] k) {
+
+        int[] ep = c.ep;
+        long e0 = block[4 + ep[0]] ^ k[0];
+        long e1 = block[4 + ep[1]] ^ k[1];
+        long e2 = block[4 + ep[2]] ^ k[2];
+        long e3 = block[4 + ep[3]] ^ k[3];
+        long e4 = block[4 + ep[4]] ^ k[4];
+        long e5 = block[4 + ep[5]] ^ k[5];
+        long e6 = block[4 + ep[6]] ^ k[6];
+        long e7 = block[4 + ep[7]] ^ k[7];
+
+        long p0 = sBox(c.s0High, e0, e1, e2, e3);
+        long p1 = sBox(c.s0Low, e0, e1, e2, e3);
+        long p2 = sBox(c.s1High, e4, e5, e6, e7);
+        long p3 = sBox(c.s1Low, e4, e5, e6, e7);
+
+        for (int j = 0; j < 4; j++) {
+
+            int sel = c.p4[j];
+            block[j] ^= sel == 0 ? p0 : sel == 1 ? p1 : sel == 2 ? p2 : p3;
+
+        }
+
+    }
+
+    /**
+     * @param t One output bit of the S-box for each of the 16 inputs, as all-zero or all-one slices.
+     * @param a0 The most significant input slice.
+     * @param a1 The second input slice.
+     * @param a2 The third input slice.
+     * @param a3 The least significant input slice.
+     * @return The output bit slice, selected by a 16-way multiplexer tree.
+     */
+    private static long sBox(long[] t, long a0, long a1, long a2, long a3) {
+
+        long m0 = mux(a3, t[1], t[0]);
+        long m1 = mux(a3, t[3], t[2]);
+        long m2 = mux(a3, t[5], t[4]);
+        long m3 = mux(a3, t[7], t[6]);
+        long m4 = mux(a3, t[9], t[8]);
+        long m5 = mux(a3, t[11], t[10]);
+        long m6 = mux(a3, t[13], t[12]);
+        long m7 = mux(a3, t[15], t[14]);
+
+        long n0 = mux(a2, m1, m0);
+        long n1 = mux(a2, m3, m2);
+        long n2 = mux(a2, m5, m4);
+        long n3 = mux(a2, m7, m6);
+
+        return mux(a0, mux(a1, n3, n2), mux(a1, n1, n0));
+
+    }
+
+    /**
+     * @param sel The select slice.
+     * @param one The slice chosen where sel is 1.
+     * @param zero The slice chosen where sel is 0.
+     * @return The bitwise selection.
+     */
+    private static long mux(long sel, long one, long zero) {
+
+        return zero ^ (sel & (one ^ zero));
+
+    }
+
+    /**
+     * The permutations and S-boxes of one spec in the form the slices need.
+     */
+    private static final class Circuit {
+
+        private final SDESSpec spec;
+        private final int[] encryptIn; // IP
+        private final int[] encryptOut; // IP inverse
+        private final int[] decryptIn; // the inverse of IP inverse
+        private final int[] decryptOut; // the inverse of IP
+        private final int[] ep;
+        private final int[] p4;
+        private final long[] s0High = new long[16];
+        private final long[] s0Low = new long[16];
+        private final long[] s1High = new long[16];
+        private final long[] s1Low = new long[16];
+
+        Circuit(SDESSpec spec) {
+
+            this.spec = spec;
+            this.encryptIn = spec.getIp().getVector();
+            this.encryptOut = spec.getIpInverse().getVector();
+            this.decryptIn = inverse(encryptOut);
+            this.decryptOut = inverse(encryptIn);
+            this.ep = spec.getEp().getVector();
+            this.p4 = spec.getP4().getVector();
+
+            int[] s0 = spec.getS0();
+            int[] s1 = spec.getS1();
+
+            for (int i = 0; i < 16; i++) {
+
+                s0High[i] = (s0[i] & 2) != 0 ? -1L : 0L;
+                s0Low[i] = (s0[i] & 1) != 0 ? -1L : 0L;
+                s1High[i] = (s1[i] & 2) != 0 ? -1L : 0L;
+                s1Low[i] = (s1[i] & 1) != 0 ? -1L : 0L;
+
+            }
+
+        }
+
+        /**
+         * @param p A permutation vector, every index appears exactly once.
+         * @return The vector that undoes p.
+         */
+        private static int[] inverse(int[] p) {
+
+            int[] result = new int[p.length];
+
+            for (int i = 0; i < p.length; i++) {
+
+                result[p[i]] = i;
+
+            }
+
+            return result;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,330 @@
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A stronger SDES variant compiled into one pair of tables: up to three SDES stages with their own 10-bit keys, each
+ * running any number of rounds. Two keys give double SDES, the second stage encrypting the output of the first;
+ * three keys give triple SDES in the encrypt-decrypt-encrypt order of triple DES, so three equal keys are single
+ * SDES. Rounds past the second take their subkeys from SDESSpec.subkey, so they need a spec with the textbook k1
+ * and k2 selections.
+ *
+ * Whatever the stages and rounds, the result is still a permutation of the 256 byte values, so it is computed once
+ * for every byte when the cascade is created and encrypting is a single table read per byte, the same cost as plain
+ * SDES. An SDESCascade is immutable and can be shared by any number of threads.
+ */
+public final class SDESCascade {
+
+    private final SDESSpec spec;
+    private final int rounds;
+    private final int[] keys;
+    private final byte[] encryptTable = new byte[256]; // cipher byte for every plain byte
+    private final byte[] decryptTable = new byte[256]; // plain byte for every cipher byte
+
+    /**
+     * @param spec The SDES variant every stage runs.
+     * @param rounds The number of rounds per stage, 1-64, at most 2 if the spec has its own k1 and k2 selections.
+     * @param keys The key of every stage, 1-3 keys of 10 bits each, bit 9 the leftmost key bit.
+     * @throws IllegalArgumentException
+     */
+    public SDESCascade(SDESSpec spec, int rounds, int... keys) throws IllegalArgumentException {
+
+        //check for round counts and key counts that do not describe a cascade
+        if (rounds < 1 || rounds > 64) {
+
+            throw SDESMetrics.error(new IllegalArgumentException("Rounds (" + rounds + ") is out of bounds (1-64)"));
+
+        }
+
+        if (keys.length < 1 || keys.length > 3) {
+
+            throw SDESMetrics.error(new IllegalArgumentException("Number of keys (" + keys.length + ") is out of bounds (1-3)"));
+
+        }
+
+        for (int key : keys) {
+
+            if (key < 0 || key > 0x3FF) {
+
+                throw SDESMetrics.error(new IllegalArgumentException("Key (" + key + ") is out of bounds (0-1023)"));
+
+            }
+
+        }
+
+        this.spec = Objects.requireNonNull(spec, "spec");
+        this.rounds = rounds;
+        this.keys = keys.clone();
+
+        //follow every byte through the stages, then invert the result for decryption
+        for (int i = 0; i < 256; i++) {
+
+            encryptTable[i] = (byte) i;
+
+        }
+
+        for (int s = 0; s < keys.length; s++) {
+
+            byte[] stage = stageTable(keys[s], keys.length == 3 && s == 1);
+
+            for (int i = 0; i < 256; i++) {
+
+                encryptTable[i] = stage[encryptTable[i] & 0xFF];
+
+            }
+
+        }
+
+        for (int i = 0; i < 256; i++) {
+
+            decryptTable[encryptTable[i] & 0xFF] = (byte) i;
+
+        }
+
+    }
+
+    /**
+     * @param key1 The first key.
+     * @param key2 The second key.
+     * @return Double standard SDES, two rounds per stage, with a 20-bit key.
+     * @throws IllegalArgumentException
+     */
+    public static SDESCascade ofDouble(int key1, int key2) throws IllegalArgumentException {
+
+        return new SDESCascade(SDESSpec.STANDARD, 2, key1, key2);
+
+    }
+
+    /**
+     * @param key1 The key of the first encryption.
+     * @param key2 The key of the decryption in the middle.
+     * @param key3 The key of the last encryption.
+     * @return Triple standard SDES, two rounds per stage, with a 30-bit key.
+     * @throws IllegalArgumentException
+     */
+    public static SDESCascade ofTriple(int key1, int key2, int key3) throws IllegalArgumentException {
+
+        return new SDESCascade(SDESSpec.STANDARD, 2, key1, key2, key3);
+
+    }
+
+    /**
+     * @param key The stage's key.
+     * @param decrypt True for the middle stage of a triple cascade, which decrypts.
+     * @return The stage as a table. Two-round stages of standard SDES come from the shared key cache, other stages
+     * run every byte through the packed round chain once. A decrypting stage inverts that table rather than running
+     * the subkeys backwards, which would only undo the rounds if the spec's final permutation inverts its initial one.
+     */
+    private byte[] stageTable(int key, boolean decrypt) {
+
+        if (rounds == 2 && spec == SDESSpec.STANDARD) {
+
+            return SDESKeyCache.shared().get(key).table(!decrypt);
+
+        }
+
+        int[] subkeys = new int[rounds];
+
+        for (int r = 0; r < rounds; r++) {
+
+            subkeys[r] = spec.subkey(key, r);
+
+        }
+
+        byte[] table = new byte[256];
+
+        for (int i = 0; i < 256; i++) {
+
+            table[i] = spec.encryptByte((byte) i, subkeys);
+
+        }
+
+        if (!decrypt) {
+
+            return table;
+
+        }
+
+        byte[] inverse = new byte[256];
+
+        for (int i = 0; i < 256; i++) {
+
+            inverse[table[i] & 0xFF] = (byte) i;
+
+        }
+
+        return inverse;
+
+    }
+
+    /**
+     * @return The SDES variant every stage runs.
+     */
+    public SDESSpec getSpec() {
+
+        return spec;
+
+    }
+
+    /**
+     * @return The number of rounds per stage.
+     */
+    public int getRounds() {
+
+        return rounds;
+
+    }
+
+    /**
+     * @return A copy of the stage keys, in the order the stages run.
+     */
+    public int[] getKeys() {
+
+        return keys.clone();
+
+    }
+
+    /**
+     * @param b A single byte of plain text.
+     * @return The encrypted byte.
+     */
+    public byte encryptByte(byte b) {
+
+        return encryptTable[b & 0xFF];
+
+    }
+
+    /**
+     * @param b A single byte of cipher text.
+     * @return The decrypted byte.
+     */
+    public byte decryptByte(byte b) {
+
+        return decryptTable[b & 0xFF];
+
+    }
+
+    /**
+     * @param plain The plain text bytes.
+     * @return A new array holding the cipher text.
+     */
+    public byte[] encrypt(byte[] plain) {
+
+        byte[] result = new byte[plain.length];
+        lookup(encryptTable, plain, 0, plain.length, result, 0);
+
+        return result;
+
+    }
+
+    /**
+     * @param cipher The cipher text bytes.
+     * @return A new array holding the plain text.
+     */
+    public byte[] decrypt(byte[] cipher) {
+
+        byte[] result = new byte[cipher.length];
+        lookup(decryptTable, cipher, 0, cipher.length, result, 0);
+
+        return result;
+
+    }
+
+    /**
+     * @param src The plain text bytes.
+     * @param srcOff The index of the first byte to encrypt.
+     * @param len The number of bytes to encrypt.
+     * @param dst The array the cipher text is written to, may be src itself.
+     * @param dstOff The index in dst of the first cipher text byte.
+     * @throws IndexOutOfBoundsException
+     */
+    public void encrypt(byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+        lookup(encryptTable, src, srcOff, len, dst, dstOff);
+
+    }
+
+    /**
+     * @param src The cipher text bytes.
+     * @param srcOff The index of the first byte to decrypt.
+     * @param len The number of bytes to decrypt.
+     * @param dst The array the plain text is written to, may be src itself.
+     * @param dstOff The index in dst of the first plain text byte.
+     * @throws IndexOutOfBoundsException
+     */
+    public void decrypt(byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+        lookup(decryptTable, src, srcOff, len, dst, dstOff);
+
+    }
+
+    /**
+     * @param encrypt True for the encrypt table, false for the decrypt table.
+     * @return The table itself, not a copy. Callers must not modify it.
+     */
+    byte[] table(boolean encrypt) {
+
+        return encrypt ? encryptTable : decryptTable;
+
+    }
+
+    /**
+     * @param table The encrypt or decrypt table.
+     * @param src The bytes to transform.
+     * @param srcOff The index of the first byte.
+     * @param len The number of bytes.
+     * @param dst The array the result is written to.
+     * @param dstOff The index in dst of the first result byte.
+     */
+    private static void lookup(byte[] table, byte[] src, int srcOff, int len, byte[] dst, int dstOff) {
+
+        for (int i = 0; i < len; i++) {
+
+            dst[dstOff + i] = table[src[srcOff + i] & 0xFF];
+
+        }
+
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        return o instanceof SDESCascade && spec == ((SDESCascade) o).spec && rounds == ((SDESCascade) o).rounds && Arrays.equals(keys, ((SDESCascade) o).keys);
+
+    }
+
+    @Override
+    public int hashCode() {
+
+        return 31 * Arrays.hashCode(keys) + rounds;
+
+    }
+
+    /**
+     * @return The stage keys as bit strings and the rounds, such as 1010000010+0111111101 (2 rounds).
+     */
+    @Override
+    public String toString() {
+
+        StringBuilder sb = new StringBuilder();
+
+        for (int key : keys) {
+
+            if (sb.length() > 0) {
+
+                sb.append('+');
+
+            }
+
+            sb.append(SDESCodec.toBits(SDESBits.toBits(key, 10)));
+
+        }
+
+        return sb.append(" (").append(rounds).append(rounds == 1 ? " round)" : " rounds)").toString();
+
+    }
+
+}
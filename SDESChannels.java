@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Encrypt or decrypt everything from a readable channel into a writable channel. Data moves through one
+ * fixed-size buffer that is reused for the whole transfer, so memory use stays constant whatever the size of the
+ * input. Both channels are expected to be in blocking mode.
+ */
+public final class SDESChannels {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private SDESChannels() {
+
+    }
+
+    /**
+     * @param in The plain text channel, read until end of stream.
+     * @param out The channel the cipher text is written to.
+     * @param key The key to encrypt with.
+     * @return The number of bytes transferred.
+     * @throws IOException
+     */
+    public static long encrypt(ReadableByteChannel in, WritableByteChannel out, SDESKey key) throws IOException {
+
+        return transform(in, out, key, true, DEFAULT_BUFFER_SIZE);
+
+    }
+
+    /**
+     * @param in The cipher text channel, read until end of stream.
+     * @param out The channel the plain text is written to.
+     * @param key The key to decrypt with.
+     * @return The number of bytes transferred.
+     * @throws IOException
+     */
+    public static long decrypt(ReadableByteChannel in, WritableByteChannel out, SDESKey key) throws IOException {
+
+        return transform(in, out, key, false, DEFAULT_BUFFER_SIZE);
+
+    }
+
+    /**
+     * @param in The plain text channel, read until end of stream.
+     * @param out The channel the cipher text is written to.
+     * @param checksum The stage that encrypts and checksums the cipher text in the same pass; its value afterwards
+     * covers everything written to out.
+     * @return The number of bytes transferred.
+     * @throws IOException
+     */
+    public static long encrypt(ReadableByteChannel in, WritableByteChannel out, SDESChecksum checksum) throws IOException {
+
+        return transform(in, out, null, checksum, true, DEFAULT_BUFFER_SIZE);
+
+    }
+
+    /**
+     * @param in The cipher text channel, read until end of stream.
+     * @param out The channel the plain text is written to.
+     * @param checksum The stage that checksums the cipher text and decrypts it in the same pass; compare its value
+     * with the encrypting side's afterwards, for example with verify.
+     * @return The number of bytes transferred.
+     * @throws IOException
+     */
+    public static long decrypt(ReadableByteChannel in, WritableByteChannel out, SDESChecksum checksum) throws IOException {
+
+        return transform(in, out, null, checksum, false, DEFAULT_BUFFER_SIZE);
+
+    }
+
+    /**
+     * @param in The channel to read from until end of stream.
+     * @param out The channel to write the result to.
+     * @param key The key to transform with.
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param bufferSize The size of the transfer buffer.
+     * @return The number of bytes transferred.
+     * @throws IOException
+     * @throws IllegalArgumentException
+     */
+    public static long transform(ReadableByteChannel in, WritableByteChannel out, SDESKey key, boolean encrypt, int bufferSize) throws IOException, IllegalArgumentException {
+
+        return transform(in, out, key, null, encrypt, bufferSize);
+
+    }
+
+    /**
+     * @param in The channel to read from until end of stream.
+     * @param out The channel to write the result to.
+     * @param key The key to transform with, used when checksum is null.
+     * @param checksum The stage to transform and checksum with, or null.
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param bufferSize The size of the transfer buffer.
+     * @return The number of bytes transferred.
+     * @throws IOException
+     * @throws IllegalArgumentException
+     */
+    private static long transform(ReadableByteChannel in, WritableByteChannel out, SDESKey key, SDESChecksum checksum, boolean encrypt, int bufferSize) throws IOException, IllegalArgumentException {
+
+        //check for invalid buffer sizes
+        if (bufferSize < 1) {
+
+            throw new IllegalArgumentException("Buffer size (" + bufferSize + ") must be at least 1");
+
+        }
+
+        //a direct buffer lets file and socket channels read and write it without an extra copy
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        long total = 0;
+
+        while (in.read(buffer) >= 0) {
+
+            buffer.flip();
+
+            if (checksum == null) {
+
+                key.transform(encrypt, buffer);
+
+            } else if (encrypt) {
+
+                checksum.encrypt(buffer);
+
+            } else {
+
+                checksum.decrypt(buffer);
+
+            }
+
+            total += buffer.limit();
+
+            //a blocking channel may still write less than asked for
+            while (buffer.hasRemaining()) {
+
+                out.write(buffer);
+
+            }
+
+            buffer.clear();
+
+        }
+
+        return total;
+
+    }
+
+}
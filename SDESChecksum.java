@@ -0,0 +1,366 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+
+/**
+ * Encrypts or decrypts a stream of data and checksums its cipher text in the same pass, so integrity checking does
+ * not cost a second trip through memory. Encrypting checksums the bytes it has just written, decrypting checksums
+ * the bytes it is about to read; either way the checksum covers the cipher text, and the decrypting side ends up
+ * with the same value as the encrypting side when the data arrived intact.
+ *
+ * CRC32C transforms a few KB at a time and runs the CRC over each block while it is still in the L1 cache; it
+ * detects corruption but not tampering. CBC-MAC chains every cipher text byte through the encrypt table of a second
+ * key inside the transform loop itself. SDES blocks are a single byte, so the bytes are spread over four
+ * interleaved chains to get a 32-bit tag, and the length is chained in when the value is taken so a truncated or
+ * padded message changes the tag. The length comes last, so the splice and extension forgeries against plain
+ * CBC-MAC still work, and an 8-bit block cipher with a 10-bit key can be searched exhaustively: like the CRC, the
+ * tag only detects accidental corruption. Like the coders it resembles, an instance is not thread safe.
+ */
+public final class SDESChecksum {
+
+    private static final int BLOCK = 4096; // bytes transformed before the CRC runs over them
+
+    private final SDESKey key;
+    private final byte[] mac; // the encrypt table of the MAC key, null for CRC32C
+    private final CRC32C crc = new CRC32C();
+    private final int[] lanes = new int[4]; // the four CBC-MAC chains, byte i goes to chain i % 4
+    private byte[] chunk; // stages direct buffer bytes for the CBC-MAC loop, created the first time one is passed
+    private long length; // bytes checksummed so far
+
+    /**
+     * @param key The key to encrypt and decrypt with.
+     * @param macKey The CBC-MAC key, or null for CRC32C.
+     */
+    private SDESChecksum(SDESKey key, SDESKey macKey) {
+
+        this.key = Objects.requireNonNull(key, "key");
+        this.mac = macKey != null ? macKey.table(true) : null;
+
+    }
+
+    /**
+     * @param key The key to encrypt and decrypt with.
+     * @return A stage that checksums the cipher text with CRC32C.
+     */
+    public static SDESChecksum crc32c(SDESKey key) {
+
+        return new SDESChecksum(key, null);
+
+    }
+
+    /**
+     * @param key The key to encrypt and decrypt with.
+     * @param macKey The key of the CBC-MAC, which should not be key itself.
+     * @return A stage that checksums the cipher text with a keyed 32-bit CBC-MAC.
+     */
+    public static SDESChecksum cbcMac(SDESKey key, SDESKey macKey) {
+
+        return new SDESChecksum(key, Objects.requireNonNull(macKey, "macKey"));
+
+    }
+
+    /**
+     * @param src The plain text bytes.
+     * @param srcOff The index of the first byte to encrypt.
+     * @param len The number of bytes to encrypt.
+     * @param dst The array the cipher text is written to, may be src itself at the same offset.
+     * @param dstOff The index in dst of the first cipher text byte.
+     * @throws IndexOutOfBoundsException
+     * Encrypt the bytes and add their cipher text to the checksum.
+     */
+    public void encrypt(byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        transform(true, src, srcOff, len, dst, dstOff);
+
+    }
+
+    /**
+     * @param src The cipher text bytes.
+     * @param srcOff The index of the first byte to decrypt.
+     * @param len The number of bytes to decrypt.
+     * @param dst The array the plain text is written to, may be src itself at the same offset.
+     * @param dstOff The index in dst of the first plain text byte.
+     * @throws IndexOutOfBoundsException
+     * Add the cipher text to the checksum and decrypt it.
+     */
+    public void decrypt(byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        transform(false, src, srcOff, len, dst, dstOff);
+
+    }
+
+    /**
+     * @param buf The buffer whose remaining plain text bytes are encrypted in place. Its position is not changed.
+     * Encrypt the bytes and add their cipher text to the checksum.
+     * @throws ReadOnlyBufferException
+     */
+    public void encrypt(ByteBuffer buf) throws ReadOnlyBufferException {
+
+        transform(true, buf);
+
+    }
+
+    /**
+     * @param buf The buffer whose remaining cipher text bytes are decrypted in place. Its position is not changed.
+     * Add the cipher text to the checksum and decrypt it.
+     * @throws ReadOnlyBufferException
+     */
+    public void decrypt(ByteBuffer buf) throws ReadOnlyBufferException {
+
+        transform(false, buf);
+
+    }
+
+    /**
+     * @return The checksum of all cipher text so far: the CRC32C, or the CBC-MAC tag with the length chained in.
+     * Taking the value does not end the stream; more data can follow.
+     */
+    public int getValue() {
+
+        if (mac == null) {
+
+            return (int) crc.getValue();
+
+        }
+
+        int[] tag = lanes.clone();
+
+        //chain the big-endian length in after the data, continuing the interleaving
+        for (int i = 0; i < 8; i++) {
+
+            int lane = (int) ((length + i) & 3);
+            tag[lane] = mac[tag[lane] ^ (int) ((length >>> (56 - 8 * i)) & 0xFF)] & 0xFF;
+
+        }
+
+        return tag[0] << 24 | tag[1] << 16 | tag[2] << 8 | tag[3];
+
+    }
+
+    /**
+     * @return The number of bytes checksummed so far.
+     */
+    public long getLength() {
+
+        return length;
+
+    }
+
+    /**
+     * @param expected The checksum the encrypting side took.
+     * @throws IOException If the cipher text checksummed so far does not match it.
+     */
+    public void verify(int expected) throws IOException {
+
+        int actual = getValue();
+
+        if (actual != expected) {
+
+            throw new IOException("SDES " + (mac == null ? "CRC32C" : "CBC-MAC") + " mismatch (" + String.format("%08x", actual) + ", expected " + String.format("%08x", expected) + ")");
+
+        }
+
+    }
+
+    /**
+     * Start a new checksum, as if nothing had been transformed yet.
+     */
+    public void reset() {
+
+        crc.reset();
+        lanes[0] = lanes[1] = lanes[2] = lanes[3] = 0;
+        length = 0;
+
+    }
+
+    /**
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param src The bytes to transform.
+     * @param srcOff The index of the first byte.
+     * @param len The number of bytes.
+     * @param dst The array the result is written to.
+     * @param dstOff The index in dst of the first result byte.
+     * @throws IndexOutOfBoundsException
+     */
+    private void transform(boolean encrypt, byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+
+        if (mac != null) {
+
+            chain(key.table(encrypt), encrypt, src, srcOff, len, dst, dstOff);
+
+        } else {
+
+            for (int done = 0; done < len; done += BLOCK) {
+
+                int n = Math.min(BLOCK, len - done);
+
+                //the CRC reads the cipher text block while the transform has it in the cache
+                if (encrypt) {
+
+                    key.transform(true, src, srcOff + done, dst, dstOff + done, n);
+                    crc.update(dst, dstOff + done, n);
+
+                } else {
+
+                    crc.update(src, srcOff + done, n);
+                    key.transform(false, src, srcOff + done, dst, dstOff + done, n);
+
+                }
+
+            }
+
+        }
+
+        length += len;
+
+    }
+
+    /**
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param buf The buffer whose remaining bytes are transformed in place.
+     * @throws ReadOnlyBufferException
+     */
+    private void transform(boolean encrypt, ByteBuffer buf) throws ReadOnlyBufferException {
+
+        //check before the checksum has seen any of the bytes, so a rejected buffer leaves it unchanged
+        if (buf.isReadOnly()) {
+
+            throw new ReadOnlyBufferException();
+
+        }
+
+        if (buf.hasArray()) {
+
+            transform(encrypt, buf.array(), buf.arrayOffset() + buf.position(), buf.remaining(), buf.array(), buf.arrayOffset() + buf.position());
+
+            return;
+
+        }
+
+        int pos = buf.position();
+        int len = buf.remaining();
+
+        if (mac != null) {
+
+            //copy a block at a time out of the direct buffer so the interleaved chains run on an array
+            if (chunk == null) {
+
+                chunk = new byte[BLOCK];
+
+            }
+
+            byte[] table = key.table(encrypt);
+
+            for (int done = 0; done < len; done += BLOCK) {
+
+                int n = Math.min(BLOCK, len - done);
+                buf.get(pos + done, chunk, 0, n);
+                chain(table, encrypt, chunk, 0, n, chunk, 0);
+                buf.put(pos + done, chunk, 0, n);
+                length += n;
+
+            }
+
+        } else {
+
+            for (int done = 0; done < len; done += BLOCK) {
+
+                int n = Math.min(BLOCK, len - done);
+                ByteBuffer block = buf.duplicate().position(pos + done).limit(pos + done + n);
+
+                if (encrypt) {
+
+                    key.transform(true, block);
+                    crc.update(block);
+
+                } else {
+
+                    crc.update(block.duplicate());
+                    key.transform(false, block);
+
+                }
+
+            }
+
+            length += len;
+
+        }
+
+    }
+
+    /**
+     * @param table The encrypt or decrypt table of the key.
+     * @param encrypt True if table encrypts, so the bytes it writes are the cipher text.
+     * @param src The bytes to transform.
+     * @param srcOff The index of the first byte.
+     * @param len The number of bytes.
+     * @param dst The array the result is written to.
+     * @param dstOff The index in dst of the first result byte.
+     * Transform the bytes and chain each cipher text byte into its CBC-MAC lane in the same loop. The four lanes are
+     * kept in locals, rotated so a is always the lane of the next byte, which lets the four chains overlap.
+     */
+    private void chain(byte[] table, boolean encrypt, byte[] src, int srcOff, int len, byte[] dst, int dstOff) {
+
+        long start = SDESMetrics.ENABLED ? System.nanoTime() : 0L;
+        byte[] m = mac;
+        int first = (int) (length & 3);
+        int a = lanes[first];
+        int b = lanes[(first + 1) & 3];
+        int c = lanes[(first + 2) & 3];
+        int d = lanes[(first + 3) & 3];
+        int i = 0;
+
+        for (; i + 4 <= len; i += 4) {
+
+            byte p0 = src[srcOff + i];
+            byte p1 = src[srcOff + i + 1];
+            byte p2 = src[srcOff + i + 2];
+            byte p3 = src[srcOff + i + 3];
+            byte t0 = table[p0 & 0xFF];
+            byte t1 = table[p1 & 0xFF];
+            byte t2 = table[p2 & 0xFF];
+            byte t3 = table[p3 & 0xFF];
+            dst[dstOff + i] = t0;
+            dst[dstOff + i + 1] = t1;
+            dst[dstOff + i + 2] = t2;
+            dst[dstOff + i + 3] = t3;
+            a = m[a ^ ((encrypt ? t0 : p0) & 0xFF)] & 0xFF;
+            b = m[b ^ ((encrypt ? t1 : p1) & 0xFF)] & 0xFF;
+            c = m[c ^ ((encrypt ? t2 : p2) & 0xFF)] & 0xFF;
+            d = m[d ^ ((encrypt ? t3 : p3) & 0xFF)] & 0xFF;
+
+        }
+
+        for (; i < len; i++) {
+
+            byte p = src[srcOff + i];
+            byte t = table[p & 0xFF];
+            dst[dstOff + i] = t;
+            int next = m[a ^ ((encrypt ? t : p) & 0xFF)] & 0xFF;
+            a = b;
+            b = c;
+            c = d;
+            d = next;
+
+        }
+
+        int last = (int) ((length + len) & 3);
+        lanes[last] = a;
+        lanes[(last + 1) & 3] = b;
+        lanes[(last + 2) & 3] = c;
+        lanes[(last + 3) & 3] = d;
+
+        if (SDESMetrics.ENABLED) {
+
+            SDESMetrics.record(encrypt, len, start);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,231 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A connection to an SDESServer. Each call sends one request and waits for its response; calls from several
+ * threads are serialized on the connection, so give busy threads their own client.
+ */
+public final class SDESClient implements Closeable {
+
+    private final SocketChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(SDESServer.HEADER);
+
+    /**
+     * @param channel The connected channel.
+     */
+    private SDESClient(SocketChannel channel) {
+
+        this.channel = channel;
+
+    }
+
+    /**
+     * @param address The server's address, TCP or a Unix domain socket.
+     * @return The connected client.
+     * @throws IOException
+     */
+    public static SDESClient connect(SocketAddress address) throws IOException {
+
+        SocketChannel channel = address instanceof UnixDomainSocketAddress ? SocketChannel.open(StandardProtocolFamily.UNIX) : SocketChannel.open();
+
+        try {
+
+            channel.connect(address);
+
+        } catch (IOException e) {
+
+            channel.close();
+
+            throw e;
+
+        }
+
+        return new SDESClient(channel);
+
+    }
+
+    /**
+     * @param key The key, 0-1023.
+     * @param mode The mode of operation.
+     * @param iv The IV, or the nonce in CTR mode. Ignored in ECB mode.
+     * @param plain The plain text.
+     * @return The cipher text.
+     * @throws IllegalArgumentException If the key is out of bounds or the payload is too large for a frame.
+     * @throws IOException If the connection fails or the server rejects the request.
+     */
+    public byte[] encrypt(int key, SDESMode mode, byte iv, byte[] plain) throws IllegalArgumentException, IOException {
+
+        return call(SDESServer.ENCRYPT, key, mode, iv, plain);
+
+    }
+
+    /**
+     * @param key The key, 0-1023.
+     * @param mode The mode of operation.
+     * @param iv The IV, or the nonce in CTR mode. Ignored in ECB mode.
+     * @param cipher The cipher text.
+     * @return The plain text.
+     * @throws IllegalArgumentException If the key is out of bounds or the payload is too large for a frame.
+     * @throws IOException If the connection fails or the server rejects the request.
+     */
+    public byte[] decrypt(int key, SDESMode mode, byte iv, byte[] cipher) throws IllegalArgumentException, IOException {
+
+        return call(SDESServer.DECRYPT, key, mode, iv, cipher);
+
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        channel.close();
+
+    }
+
+    /**
+     * @param op SDESServer.ENCRYPT or SDESServer.DECRYPT.
+     * @param key The key.
+     * @param mode The mode of operation.
+     * @param iv The IV.
+     * @param payload The bytes to transform.
+     * @return The result.
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    private synchronized byte[] call(byte op, int key, SDESMode mode, byte iv, byte[] payload) throws IllegalArgumentException, IOException {
+
+        Objects.requireNonNull(mode, "mode");
+
+        //check for requests the server cannot take, before a key that does not fit the header is truncated
+        if (key < 0 || key > 0x3FF) {
+
+            throw new IllegalArgumentException("Key (" + key + ") is out of bounds (0-1023)");
+
+        }
+
+        if (payload.length > SDESServer.MAX_FRAME - (SDESServer.HEADER - 4)) {
+
+            throw new IllegalArgumentException("Payload (" + payload.length + " bytes) is larger than a frame can hold");
+
+        }
+
+        header.clear();
+        header.putInt(payload.length + SDESServer.HEADER - 4).put(op).putShort((short) key).put((byte) mode.ordinal()).put(iv).flip();
+        FutureTask<Void> send = new FutureTask<>(() -> {
+
+            write(header);
+            write(ByteBuffer.wrap(payload));
+
+            return null;
+
+        });
+
+        //the server streams the result of a frame too large for its buffer back while it still reads the payload, so
+        //such a payload is sent from another thread
+        if (SDESServer.HEADER + payload.length > SDESServer.BUFFER_SIZE) {
+
+            Thread sender = new Thread(send, "sdes-client-send");
+            sender.setDaemon(true);
+            sender.start();
+
+        } else {
+
+            send.run();
+
+        }
+
+        byte[] result = receive();
+
+        try {
+
+            send.get();
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while sending");
+
+        } catch (ExecutionException e) {
+
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * @return The result of the response.
+     * @throws IOException If the response is an error.
+     */
+    private byte[] receive() throws IOException {
+
+        ByteBuffer response = ByteBuffer.allocate(SDESServer.RESPONSE_HEADER);
+        read(response);
+        int len = response.getInt(0) - 1;
+        byte status = response.get(4);
+
+        //check for a frame that cannot be a response
+        if (len < 0 || len > SDESServer.MAX_FRAME) {
+
+            throw new IOException("Invalid response frame length (" + (len + 1) + ")");
+
+        }
+
+        byte[] result = new byte[len];
+        read(ByteBuffer.wrap(result));
+
+        if (status != SDESServer.OK) {
+
+            throw new IOException("SDES server rejected the request: " + new String(result, StandardCharsets.UTF_8));
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * @param buf The bytes to send, all of them are written.
+     * @throws IOException
+     */
+    private void write(ByteBuffer buf) throws IOException {
+
+        while (buf.hasRemaining()) {
+
+            channel.write(buf);
+
+        }
+
+    }
+
+    /**
+     * @param buf The buffer to fill completely.
+     * @throws IOException If the server closes the connection first.
+     */
+    private void read(ByteBuffer buf) throws IOException {
+
+        while (buf.hasRemaining()) {
+
+            if (channel.read(buf) < 0) {
+
+                throw new IOException("SDES server closed the connection");
+
+            }
+
+        }
+
+    }
+
+}
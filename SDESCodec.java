@@ -0,0 +1,733 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Text codecs for cipher text and keys: hexadecimal, base64 (the standard alphabet with padding) and bit strings of
+ * 0s and 1s. Every codec writes into a caller's char or byte array, or appends to an Appendable in blocks, so large
+ * inputs are encoded without a String or a builder per byte. Byte bit strings are written most significant bit
+ * first, as binary literals are; boolean arrays are written in index order, as show(boolean[]) prints them.
+ * Decoding is strict and throws IllegalArgumentException on any character outside the alphabet, including white
+ * space.
+ */
+public final class SDESCodec {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final char[] BASE64_DIGITS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final byte[] HEX_VALUES = values("0123456789abcdef0123456789ABCDEF".toCharArray(), 16);
+    private static final byte[] BASE64_VALUES = values(BASE64_DIGITS, 64);
+    private static final int BLOCK = 1024; // the number of chars appended to an Appendable at a time
+
+    private SDESCodec() {
+
+    }
+
+    /**
+     * @param src The bytes to encode.
+     * @return Two lower case hex digits per byte.
+     */
+    public static String toHex(byte[] src) {
+
+        char[] result = new char[2 * src.length];
+        encodeHex(src, 0, src.length, result, 0);
+
+        return new String(result);
+
+    }
+
+    /**
+     * @param src The bytes to encode.
+     * @param off The index of the first byte.
+     * @param len The number of bytes.
+     * @param dst The array the 2 * len digits are written to.
+     * @param dstOff The index in dst of the first digit.
+     * @return The number of chars written.
+     * @throws IndexOutOfBoundsException
+     */
+    public static int encodeHex(byte[] src, int off, int len, char[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(off, len, src.length);
+        Objects.checkFromIndexSize(dstOff, 2 * len, dst.length);
+
+        for (int i = 0; i < len; i++) {
+
+            int b = src[off + i];
+            dst[dstOff + 2 * i] = HEX_DIGITS[(b >>> 4) & 0xF];
+            dst[dstOff + 2 * i + 1] = HEX_DIGITS[b & 0xF];
+
+        }
+
+        return 2 * len;
+
+    }
+
+    /**
+     * @param src The bytes to encode.
+     * @param off The index of the first byte.
+     * @param len The number of bytes.
+     * @param dst The array the 2 * len digits are written to as ASCII.
+     * @param dstOff The index in dst of the first digit.
+     * @return The number of bytes written.
+     * @throws IndexOutOfBoundsException
+     */
+    public static int encodeHex(byte[] src, int off, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(off, len, src.length);
+        Objects.checkFromIndexSize(dstOff, 2 * len, dst.length);
+
+        for (int i = 0; i < len; i++) {
+
+            int b = src[off + i];
+            dst[dstOff + 2 * i] = (byte) HEX_DIGITS[(b >>> 4) & 0xF];
+            dst[dstOff + 2 * i + 1] = (byte) HEX_DIGITS[b & 0xF];
+
+        }
+
+        return 2 * len;
+
+    }
+
+    /**
+     * @param src The bytes to encode.
+     * @param off The index of the first byte.
+     * @param len The number of bytes.
+     * @param out Where the digits are appended.
+     * @throws IOException
+     * @throws IndexOutOfBoundsException
+     */
+    public static void appendHex(byte[] src, int off, int len, Appendable out) throws IOException, IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(off, len, src.length);
+        char[] block = new char[Math.min(2 * len, BLOCK)];
+
+        for (int done = 0; done < len; ) {
+
+            int n = Math.min(len - done, block.length / 2);
+            append(out, block, encodeHex(src, off + done, n, block, 0));
+            done += n;
+
+        }
+
+    }
+
+    /**
+     * @param src Hex digits, upper or lower case, an even number of them.
+     * @return The decoded bytes.
+     * @throws IllegalArgumentException
+     */
+    public static byte[] fromHex(CharSequence src) throws IllegalArgumentException {
+
+        byte[] result = new byte[src.length() / 2];
+        decodeHex(src, 0, src.length(), result, 0);
+
+        return result;
+
+    }
+
+    /**
+     * @param src Hex digits, upper or lower case.
+     * @param start The index of the first digit.
+     * @param end The index after the last digit; end - start must be even.
+     * @param dst The array the bytes are written to.
+     * @param dstOff The index in dst of the first byte.
+     * @return The number of bytes written.
+     * @throws IllegalArgumentException
+     * @throws IndexOutOfBoundsException
+     */
+    public static int decodeHex(CharSequence src, int start, int end, byte[] dst, int dstOff) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        Objects.checkFromToIndex(start, end, src.length());
+        int len = checkHexLength(end - start);
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+
+        for (int i = 0; i < len; i++) {
+
+            int at = start + 2 * i;
+            dst[dstOff + i] = (byte) (value(HEX_VALUES, src.charAt(at), at, "hex") << 4 | value(HEX_VALUES, src.charAt(at + 1), at + 1, "hex"));
+
+        }
+
+        return len;
+
+    }
+
+    /**
+     * @param src Hex digits as ASCII, upper or lower case.
+     * @param off The index of the first digit.
+     * @param len The number of digits, even.
+     * @param dst The array the bytes are written to, may be src itself at an offset no greater than off.
+     * @param dstOff The index in dst of the first byte.
+     * @return The number of bytes written.
+     * @throws IllegalArgumentException
+     * @throws IndexOutOfBoundsException
+     */
+    public static int decodeHex(byte[] src, int off, int len, byte[] dst, int dstOff) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(off, len, src.length);
+        int n = checkHexLength(len);
+        Objects.checkFromIndexSize(dstOff, n, dst.length);
+
+        for (int i = 0; i < n; i++) {
+
+            int at = off + 2 * i;
+            dst[dstOff + i] = (byte) (value(HEX_VALUES, (char) (src[at] & 0xFF), at, "hex") << 4 | value(HEX_VALUES, (char) (src[at + 1] & 0xFF), at + 1, "hex"));
+
+        }
+
+        return n;
+
+    }
+
+    /**
+     * @param len A number of bytes.
+     * @return The number of base64 chars they encode to, padding included.
+     */
+    public static int base64Length(int len) {
+
+        return (len + 2) / 3 * 4;
+
+    }
+
+    /**
+     * @param src The bytes to encode.
+     * @return The padded base64 encoding.
+     */
+    public static String toBase64(byte[] src) {
+
+        char[] result = new char[base64Length(src.length)];
+        encodeBase64(src, 0, src.length, result, 0);
+
+        return new String(result);
+
+    }
+
+    /**
+     * @param src The bytes to encode.
+     * @param off The index of the first byte.
+     * @param len The number of bytes.
+     * @param dst The array the base64Length(len) chars are written to.
+     * @param dstOff The index in dst of the first char.
+     * @return The number of chars written.
+     * @throws IndexOutOfBoundsException
+     */
+    public static int encodeBase64(byte[] src, int off, int len, char[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(off, len, src.length);
+        int n = base64Length(len);
+        Objects.checkFromIndexSize(dstOff, n, dst.length);
+
+        int i = 0;
+        int j = dstOff;
+
+        //whole groups of 3 bytes become 4 chars
+        for (; i + 3 <= len; i += 3) {
+
+            int g = (src[off + i] & 0xFF) << 16 | (src[off + i + 1] & 0xFF) << 8 | (src[off + i + 2] & 0xFF);
+            dst[j++] = BASE64_DIGITS[g >>> 18];
+            dst[j++] = BASE64_DIGITS[(g >>> 12) & 0x3F];
+            dst[j++] = BASE64_DIGITS[(g >>> 6) & 0x3F];
+            dst[j++] = BASE64_DIGITS[g & 0x3F];
+
+        }
+
+        //a last group of 1 or 2 bytes is padded with =
+        if (i < len) {
+
+            int g = (src[off + i] & 0xFF) << 16 | (i + 1 < len ? (src[off + i + 1] & 0xFF) << 8 : 0);
+            dst[j++] = BASE64_DIGITS[g >>> 18];
+            dst[j++] = BASE64_DIGITS[(g >>> 12) & 0x3F];
+            dst[j++] = i + 1 < len ? BASE64_DIGITS[(g >>> 6) & 0x3F] : '=';
+            dst[j++] = '=';
+
+        }
+
+        return n;
+
+    }
+
+    /**
+     * @param src The bytes to encode.
+     * @param off The index of the first byte.
+     * @param len The number of bytes.
+     * @param dst The array the base64Length(len) chars are written to as ASCII.
+     * @param dstOff The index in dst of the first char.
+     * @return The number of bytes written.
+     * @throws IndexOutOfBoundsException
+     */
+    public static int encodeBase64(byte[] src, int off, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(off, len, src.length);
+        int n = base64Length(len);
+        Objects.checkFromIndexSize(dstOff, n, dst.length);
+
+        int i = 0;
+        int j = dstOff;
+
+        for (; i + 3 <= len; i += 3) {
+
+            int g = (src[off + i] & 0xFF) << 16 | (src[off + i + 1] & 0xFF) << 8 | (src[off + i + 2] & 0xFF);
+            dst[j++] = (byte) BASE64_DIGITS[g >>> 18];
+            dst[j++] = (byte) BASE64_DIGITS[(g >>> 12) & 0x3F];
+            dst[j++] = (byte) BASE64_DIGITS[(g >>> 6) & 0x3F];
+            dst[j++] = (byte) BASE64_DIGITS[g & 0x3F];
+
+        }
+
+        if (i < len) {
+
+            int g = (src[off + i] & 0xFF) << 16 | (i + 1 < len ? (src[off + i + 1] & 0xFF) << 8 : 0);
+            dst[j++] = (byte) BASE64_DIGITS[g >>> 18];
+            dst[j++] = (byte) BASE64_DIGITS[(g >>> 12) & 0x3F];
+            dst[j++] = (byte) (i + 1 < len ? BASE64_DIGITS[(g >>> 6) & 0x3F] : '=');
+            dst[j++] = '=';
+
+        }
+
+        return n;
+
+    }
+
+    /**
+     * @param src The bytes to encode.
+     * @param off The index of the first byte.
+     * @param len The number of bytes.
+     * @param out Where the padded base64 chars are appended.
+     * @throws IOException
+     * @throws IndexOutOfBoundsException
+     */
+    public static void appendBase64(byte[] src, int off, int len, Appendable out) throws IOException, IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(off, len, src.length);
+        char[] block = new char[Math.min(base64Length(len), BLOCK)];
+
+        //every block but the last holds whole groups, so padding only ever ends the output
+        for (int done = 0; done < len; ) {
+
+            int n = Math.min(len - done, block.length / 4 * 3);
+            append(out, block, encodeBase64(src, off + done, n, block, 0));
+            done += n;
+
+        }
+
+    }
+
+    /**
+     * @param src Padded base64 chars.
+     * @return The decoded bytes.
+     * @throws IllegalArgumentException
+     */
+    public static byte[] fromBase64(CharSequence src) throws IllegalArgumentException {
+
+        int n = src.length();
+        byte[] result = new byte[checkBase64Length(n) - (n == 0 ? 0 : padding(src.charAt(n - 2), src.charAt(n - 1)))];
+        decodeBase64(src, 0, src.length(), result, 0);
+
+        return result;
+
+    }
+
+    /**
+     * @param src Padded base64 chars.
+     * @param start The index of the first char.
+     * @param end The index after the last char; end - start must be a multiple of 4.
+     * @param dst The array the bytes are written to.
+     * @param dstOff The index in dst of the first byte.
+     * @return The number of bytes written.
+     * @throws IllegalArgumentException
+     * @throws IndexOutOfBoundsException
+     */
+    public static int decodeBase64(CharSequence src, int start, int end, byte[] dst, int dstOff) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        Objects.checkFromToIndex(start, end, src.length());
+        int len = checkBase64Length(end - start);
+
+        if (len == 0) {
+
+            return 0;
+
+        }
+
+        len -= padding(src.charAt(end - 2), src.charAt(end - 1));
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+
+        int j = dstOff;
+
+        for (int i = start; i < end; i += 4) {
+
+            boolean last = i + 4 == end;
+            int c2 = src.charAt(i + 2);
+            int c3 = src.charAt(i + 3);
+            int g = value(BASE64_VALUES, src.charAt(i), i, "base64") << 18
+                    | value(BASE64_VALUES, src.charAt(i + 1), i + 1, "base64") << 12
+                    | (last && c2 == '=' && c3 == '=' ? 0 : value(BASE64_VALUES, (char) c2, i + 2, "base64") << 6)
+                    | (last && c3 == '=' ? 0 : value(BASE64_VALUES, (char) c3, i + 3, "base64"));
+            j = group(g, dst, j, dstOff + len);
+
+        }
+
+        return len;
+
+    }
+
+    /**
+     * @param src Padded base64 chars as ASCII.
+     * @param off The index of the first char.
+     * @param len The number of chars, a multiple of 4.
+     * @param dst The array the bytes are written to, may be src itself at an offset no greater than off.
+     * @param dstOff The index in dst of the first byte.
+     * @return The number of bytes written.
+     * @throws IllegalArgumentException
+     * @throws IndexOutOfBoundsException
+     */
+    public static int decodeBase64(byte[] src, int off, int len, byte[] dst, int dstOff) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(off, len, src.length);
+        int n = checkBase64Length(len);
+
+        if (n == 0) {
+
+            return 0;
+
+        }
+
+        int end = off + len;
+        n -= padding((char) src[end - 2], (char) src[end - 1]);
+        Objects.checkFromIndexSize(dstOff, n, dst.length);
+
+        int j = dstOff;
+
+        for (int i = off; i < end; i += 4) {
+
+            boolean last = i + 4 == end;
+            int c2 = src[i + 2] & 0xFF;
+            int c3 = src[i + 3] & 0xFF;
+            int g = value(BASE64_VALUES, (char) (src[i] & 0xFF), i, "base64") << 18
+                    | value(BASE64_VALUES, (char) (src[i + 1] & 0xFF), i + 1, "base64") << 12
+                    | (last && c2 == '=' && c3 == '=' ? 0 : value(BASE64_VALUES, (char) c2, i + 2, "base64") << 6)
+                    | (last && c3 == '=' ? 0 : value(BASE64_VALUES, (char) c3, i + 3, "base64"));
+            j = group(g, dst, j, dstOff + n);
+
+        }
+
+        return n;
+
+    }
+
+    /**
+     * @param src The bytes to encode.
+     * @return Eight 0s and 1s per byte, most significant bit first.
+     */
+    public static String toBits(byte[] src) {
+
+        char[] result = new char[8 * src.length];
+        encodeBits(src, 0, src.length, result, 0);
+
+        return new String(result);
+
+    }
+
+    /**
+     * @param src The bytes to encode.
+     * @param off The index of the first byte.
+     * @param len The number of bytes.
+     * @param dst The array the 8 * len chars are written to.
+     * @param dstOff The index in dst of the first char.
+     * @return The number of chars written.
+     * @throws IndexOutOfBoundsException
+     */
+    public static int encodeBits(byte[] src, int off, int len, char[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(off, len, src.length);
+        Objects.checkFromIndexSize(dstOff, 8 * len, dst.length);
+
+        for (int i = 0; i < len; i++) {
+
+            int b = src[off + i];
+
+            for (int j = 0; j < 8; j++) {
+
+                dst[dstOff + 8 * i + j] = (char) ('0' + ((b >>> (7 - j)) & 1));
+
+            }
+
+        }
+
+        return 8 * len;
+
+    }
+
+    /**
+     * @param src The bytes to encode.
+     * @param off The index of the first byte.
+     * @param len The number of bytes.
+     * @param out Where the bits are appended, most significant first.
+     * @throws IOException
+     * @throws IndexOutOfBoundsException
+     */
+    public static void appendBits(byte[] src, int off, int len, Appendable out) throws IOException, IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(off, len, src.length);
+        char[] block = new char[Math.min(8 * len, BLOCK)];
+
+        for (int done = 0; done < len; ) {
+
+            int n = Math.min(len - done, block.length / 8);
+            append(out, block, encodeBits(src, off + done, n, block, 0));
+            done += n;
+
+        }
+
+    }
+
+    /**
+     * @param src 0s and 1s, a multiple of 8 of them, most significant bit first.
+     * @return The decoded bytes.
+     * @throws IllegalArgumentException
+     */
+    public static byte[] fromBits(CharSequence src) throws IllegalArgumentException {
+
+        byte[] result = new byte[src.length() / 8];
+        decodeBits(src, 0, src.length(), result, 0);
+
+        return result;
+
+    }
+
+    /**
+     * @param src 0s and 1s, most significant bit first.
+     * @param start The index of the first bit.
+     * @param end The index after the last bit; end - start must be a multiple of 8.
+     * @param dst The array the bytes are written to.
+     * @param dstOff The index in dst of the first byte.
+     * @return The number of bytes written.
+     * @throws IllegalArgumentException
+     * @throws IndexOutOfBoundsException
+     */
+    public static int decodeBits(CharSequence src, int start, int end, byte[] dst, int dstOff) throws IllegalArgumentException, IndexOutOfBoundsException {
+
+        Objects.checkFromToIndex(start, end, src.length());
+
+        //check for bits that do not fill whole bytes
+        if ((end - start) % 8 != 0) {
+
+            throw new IllegalArgumentException("Bit string length (" + (end - start) + ") is not a multiple of 8");
+
+        }
+
+        int len = (end - start) / 8;
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+
+        for (int i = 0; i < len; i++) {
+
+            int b = 0;
+
+            for (int j = 0; j < 8; j++) {
+
+                b = b << 1 | bit(src.charAt(start + 8 * i + j), start + 8 * i + j);
+
+            }
+
+            dst[dstOff + i] = (byte) b;
+
+        }
+
+        return len;
+
+    }
+
+    /**
+     * @param bits The bits to write, such as a key.
+     * @return One 0 or 1 per bit, in index order.
+     */
+    public static String toBits(boolean[] bits) {
+
+        char[] result = new char[bits.length];
+
+        for (int i = 0; i < bits.length; i++) {
+
+            result[i] = bits[i] ? '1' : '0';
+
+        }
+
+        return new String(result);
+
+    }
+
+    /**
+     * @param src 0s and 1s, such as a key.
+     * @return The bits in index order.
+     * @throws IllegalArgumentException
+     */
+    public static boolean[] parseBits(CharSequence src) throws IllegalArgumentException {
+
+        boolean[] result = new boolean[src.length()];
+
+        for (int i = 0; i < result.length; i++) {
+
+            result[i] = bit(src.charAt(i), i) == 1;
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * @param digits The alphabet, each char's index is its value modulo radix.
+     * @param radix The number of distinct values.
+     * @return The value of each ASCII char, -1 for chars outside the alphabet.
+     */
+    private static byte[] values(char[] digits, int radix) {
+
+        byte[] result = new byte[128];
+        Arrays.fill(result, (byte) -1);
+
+        for (int i = 0; i < digits.length; i++) {
+
+            result[digits[i]] = (byte) (i % radix);
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * @param table HEX_VALUES or BASE64_VALUES.
+     * @param c The char to decode.
+     * @param index Where c was found, for the error message.
+     * @param codec The codec's name, for the error message.
+     * @return The value of c.
+     * @throws IllegalArgumentException If c is not in the alphabet.
+     */
+    private static int value(byte[] table, char c, int index, String codec) throws IllegalArgumentException {
+
+        int v = c < 128 ? table[c] : -1;
+
+        if (v < 0) {
+
+            throw new IllegalArgumentException("Invalid " + codec + " character at index " + index + " ('" + c + "')");
+
+        }
+
+        return v;
+
+    }
+
+    /**
+     * @param c '0' or '1'.
+     * @param index Where c was found, for the error message.
+     * @return The bit.
+     * @throws IllegalArgumentException
+     */
+    private static int bit(char c, int index) throws IllegalArgumentException {
+
+        if (c != '0' && c != '1') {
+
+            throw new IllegalArgumentException("Bit string contains a character other than 0 or 1 at index " + index + " ('" + c + "')");
+
+        }
+
+        return c - '0';
+
+    }
+
+    /**
+     * @param digits The number of hex digits.
+     * @return The number of bytes they decode to.
+     * @throws IllegalArgumentException If the number is odd.
+     */
+    private static int checkHexLength(int digits) throws IllegalArgumentException {
+
+        if ((digits & 1) != 0) {
+
+            throw new IllegalArgumentException("Hex string length (" + digits + ") is odd");
+
+        }
+
+        return digits / 2;
+
+    }
+
+    /**
+     * @param chars The number of base64 chars.
+     * @return The number of bytes they decode to before padding is taken off.
+     * @throws IllegalArgumentException If the number is not a multiple of 4.
+     */
+    private static int checkBase64Length(int chars) throws IllegalArgumentException {
+
+        if ((chars & 3) != 0) {
+
+            throw new IllegalArgumentException("Base64 string length (" + chars + ") is not a multiple of 4");
+
+        }
+
+        return chars / 4 * 3;
+
+    }
+
+    /**
+     * @param c2 The second to last char.
+     * @param c3 The last char.
+     * @return The number of padding chars, 0 to 2.
+     */
+    private static int padding(char c2, char c3) {
+
+        return c3 != '=' ? 0 : c2 != '=' ? 1 : 2;
+
+    }
+
+    /**
+     * @param g A decoded group of 24 bits.
+     * @param dst The array to write to.
+     * @param j The index in dst of the group's first byte.
+     * @param end The index in dst after the last decoded byte, cutting off the padding.
+     * @return The index after the bytes written.
+     */
+    private static int group(int g, byte[] dst, int j, int end) {
+
+        dst[j++] = (byte) (g >>> 16);
+
+        if (j < end) {
+
+            dst[j++] = (byte) (g >>> 8);
+
+        }
+
+        if (j < end) {
+
+            dst[j++] = (byte) g;
+
+        }
+
+        return j;
+
+    }
+
+    /**
+     * @param out The destination.
+     * @param block The chars to append.
+     * @param n The number of chars.
+     * @throws IOException
+     */
+    private static void append(Appendable out, char[] block, int n) throws IOException {
+
+        if (out instanceof StringBuilder) {
+
+            ((StringBuilder) out).append(block, 0, n);
+
+        } else if (out instanceof Writer) {
+
+            ((Writer) out).write(block, 0, n);
+
+        } else {
+
+            out.append(CharBuffer.wrap(block, 0, n));
+
+        }
+
+    }
+
+}
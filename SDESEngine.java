@@ -0,0 +1,34 @@
+/**
+ * A way of running SDES over a range of bytes. Every engine gives exactly the same output as the key's encrypt and
+ * decrypt tables; engines only differ in how they compute it. SDESEngines lists the engines and picks the default.
+ */
+public interface SDESEngine {
+
+    /**
+     * @return The name the engine is selected by.
+     */
+    String getName();
+
+    /**
+     * @param key The key to encrypt with.
+     * @param src The plain text bytes.
+     * @param srcOff The index of the first byte to encrypt.
+     * @param len The number of bytes to encrypt.
+     * @param dst The array the cipher text is written to, may be src itself at the same offset.
+     * @param dstOff The index in dst of the first cipher text byte.
+     * @throws IndexOutOfBoundsException
+     */
+    void encrypt(SDESKey key, byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException;
+
+    /**
+     * @param key The key to decrypt with.
+     * @param src The cipher text bytes.
+     * @param srcOff The index of the first byte to decrypt.
+     * @param len The number of bytes to decrypt.
+     * @param dst The array the plain text is written to, may be src itself at the same offset.
+     * @param dstOff The index in dst of the first plain text byte.
+     * @throws IndexOutOfBoundsException
+     */
+    void decrypt(SDESKey key, byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException;
+
+}
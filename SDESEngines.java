@@ -0,0 +1,234 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The available SDES engines. The default engine is chosen with the system property sdes.engine (table, bitsliced
+ * or vector) and is checked against the reference tables before it is used. The built-in engines are checked
+ * through their unmetered paths, so the startup check does not show up in SDESMetrics.
+ */
+public final class SDESEngines {
+
+    /**
+     * One lookup in the key's encrypt or decrypt table per byte.
+     */
+    public static final SDESEngine TABLE = new Unmetered() {
+
+        @Override
+        public String getName() {
+
+            return "table";
+
+        }
+
+        @Override
+        public void encrypt(SDESKey key, byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+            key.encrypt(src, srcOff, len, dst, dstOff);
+
+        }
+
+        @Override
+        public void decrypt(SDESKey key, byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+            key.decrypt(src, srcOff, len, dst, dstOff);
+
+        }
+
+        @Override
+        public void transform(SDESKey key, boolean encrypt, byte[] src, int srcOff, int len, byte[] dst, int dstOff) {
+
+            byte[] table = key.table(encrypt);
+
+            for (int i = 0; i < len; i++) {
+
+                dst[dstOff + i] = table[src[srcOff + i] & 0xFF];
+
+            }
+
+        }
+
+    };
+
+    /**
+     * 64 bytes at a time as boolean circuits over bit slices, with no table lookups and constant timing.
+     */
+    public static final SDESEngine BITSLICED = new SDESBitslicedEngine();
+
+    /**
+     * SIMD table lookups with the Vector API. This is TABLE itself when the JVM was not started with
+     * --add-modules jdk.incubator.vector.
+     */
+    public static final SDESEngine VECTOR = loadVector();
+
+    private static final SDESEngine DEFAULT = check(forName(System.getProperty("sdes.engine", "table")));
+
+    private SDESEngines() {
+
+    }
+
+    /**
+     * @return The engine selected by the sdes.engine system property, table if it is not set.
+     */
+    public static SDESEngine defaultEngine() {
+
+        return DEFAULT;
+
+    }
+
+    /**
+     * @param name The name of an engine, table or bitsliced.
+     * @return The engine.
+     * @throws IllegalArgumentException
+     */
+    public static SDESEngine forName(String name) throws IllegalArgumentException {
+
+        switch (name) {
+
+            case "table":
+                return TABLE;
+
+            case "bitsliced":
+                return BITSLICED;
+
+            case "vector":
+                return VECTOR;
+
+            default:
+                throw new IllegalArgumentException("Unknown SDES engine (" + name + "), expected table, bitsliced or vector");
+
+        }
+
+    }
+
+    /**
+     * @return The vector engine if the incubator module is present and the engine works, otherwise TABLE.
+     * The engine class refers to jdk.incubator.vector, so it is only loaded by name and any linkage failure is
+     * taken to mean the module is missing. An engine that fails the check is dropped the same way, rather than
+     * failing the initialization of this class.
+     */
+    private static SDESEngine loadVector() {
+
+        try {
+
+            return check((SDESEngine) Class.forName("SDESVectorEngine").getDeclaredConstructor().newInstance());
+
+        } catch (ReflectiveOperationException | LinkageError | IllegalStateException e) {
+
+            return TABLE;
+
+        }
+
+    }
+
+    /**
+     * @param engine The engine to check.
+     * @return The engine.
+     * @throws IllegalStateException If the engine's output differs from the reference tables.
+     * Encrypt and decrypt every byte value and some random bytes, ending in a batch shorter than 64 bytes, under a few
+     * keys, and compare with the tables the reference round function computes. The keys are built from those tables
+     * and the built-in engines run unmetered, so nothing is recorded in SDESMetrics.
+     */
+    public static SDESEngine check(SDESEngine engine) throws IllegalStateException {
+
+        Random random = new Random(0x5DE5);
+        byte[] plain = new byte[256 * 3 + 37];
+
+        for (int i = 0; i < plain.length; i++) {
+
+            plain[i] = (byte) (i < 256 ? i : random.nextInt());
+
+        }
+
+        for (int k : new int[] {0, 0x3FF, 0x282, random.nextInt(1024)}) {
+
+            byte[] tables = new byte[512];
+            int key1 = SDESSpec.STANDARD.key1(k);
+            int key2 = SDESSpec.STANDARD.key2(k);
+
+            for (int i = 0; i < 256; i++) {
+
+                byte c = SDESSpec.STANDARD.encryptByte((byte) i, key1, key2);
+                tables[i] = c;
+                tables[256 + (c & 0xFF)] = (byte) i;
+
+            }
+
+            SDESKey key = new SDESKey(k, ByteBuffer.wrap(tables), 0);
+            byte[] expected = new byte[plain.length];
+
+            for (int i = 0; i < plain.length; i++) {
+
+                expected[i] = tables[plain[i] & 0xFF];
+
+            }
+
+            byte[] cipher = new byte[plain.length];
+            transform(engine, key, true, plain, cipher);
+
+            if (!Arrays.equals(cipher, expected)) {
+
+                throw new IllegalStateException("SDES engine " + engine.getName() + " encrypts differently from the reference under key " + key);
+
+            }
+
+            byte[] back = cipher.clone();
+            transform(engine, key, false, back, back);
+
+            if (!Arrays.equals(back, plain)) {
+
+                throw new IllegalStateException("SDES engine " + engine.getName() + " decrypts differently from the reference under key " + key);
+
+            }
+
+        }
+
+        return engine;
+
+    }
+
+    /**
+     * @param engine The engine.
+     * @param key The key to transform with.
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param src The bytes to transform.
+     * @param dst The array to write the result to, as long as src.
+     */
+    private static void transform(SDESEngine engine, SDESKey key, boolean encrypt, byte[] src, byte[] dst) {
+
+        if (engine instanceof Unmetered) {
+
+            ((Unmetered) engine).transform(key, encrypt, src, 0, src.length, dst, 0);
+
+        } else if (encrypt) {
+
+            engine.encrypt(key, src, 0, src.length, dst, 0);
+
+        } else {
+
+            engine.decrypt(key, src, 0, src.length, dst, 0);
+
+        }
+
+    }
+
+    /**
+     * A built-in engine that can also run without recording anything in SDESMetrics, for the startup check.
+     */
+    interface Unmetered extends SDESEngine {
+
+        /**
+         * @param key The key to transform with.
+         * @param encrypt True to encrypt, false to decrypt.
+         * @param src The bytes to transform.
+         * @param srcOff The index of the first byte.
+         * @param len The number of bytes.
+         * @param dst The array to write the result to, may be src itself at the same offset.
+         * @param dstOff The index in dst of the first result byte.
+         * Transform the bytes without checking the ranges or recording metrics.
+         */
+        void transform(SDESKey key, boolean encrypt, byte[] src, int srcOff, int len, byte[] dst, int dstOff);
+
+    }
+
+}
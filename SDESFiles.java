@@ -0,0 +1,155 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Encrypt or decrypt whole files through memory mappings. A single mapping is limited to 2 GB, so the file is
+ * mapped and transformed one region at a time; files of any size are handled without the data ever passing through
+ * a heap array.
+ */
+public final class SDESFiles {
+
+    public static final long DEFAULT_REGION_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Receives the progress of a file transform after each region.
+     */
+    public interface ProgressListener {
+
+        /**
+         * @param done The number of bytes transformed so far.
+         * @param total The size of the input file.
+         */
+        void progress(long done, long total);
+
+    }
+
+    private SDESFiles() {
+
+    }
+
+    /**
+     * @param in The plain text file.
+     * @param out The file the cipher text is written to, created or replaced.
+     * @param key The key to encrypt with.
+     * @return The number of bytes encrypted.
+     * @throws IOException
+     */
+    public static long encrypt(Path in, Path out, SDESKey key) throws IOException {
+
+        return transform(in, out, key, true, DEFAULT_REGION_SIZE, null);
+
+    }
+
+    /**
+     * @param in The cipher text file.
+     * @param out The file the plain text is written to, created or replaced.
+     * @param key The key to decrypt with.
+     * @return The number of bytes decrypted.
+     * @throws IOException
+     */
+    public static long decrypt(Path in, Path out, SDESKey key) throws IOException {
+
+        return transform(in, out, key, false, DEFAULT_REGION_SIZE, null);
+
+    }
+
+    /**
+     * @param in The file to read.
+     * @param out The file the result is written to, created or replaced. It must not be the same file as in.
+     * @param key The key to transform with.
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param regionSize The number of bytes mapped at a time, 1..Integer.MAX_VALUE.
+     * @param listener Told about the progress after each region, or null.
+     * @return The number of bytes transformed.
+     * @throws IOException
+     * @throws IllegalArgumentException
+     */
+    public static long transform(Path in, Path out, SDESKey key, boolean encrypt, long regionSize, ProgressListener listener) throws IOException, IllegalArgumentException {
+
+        return transform(in, out, key, encrypt, regionSize, null, listener);
+
+    }
+
+    /**
+     * @param in The file to read.
+     * @param out The file the result is written to, created or replaced. It must not be the same file as in.
+     * @param key The key to transform with.
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param regionSize The number of bytes mapped at a time, 1..Integer.MAX_VALUE.
+     * @param parallel Splits each region over its threads, or null to transform on the calling thread.
+     * @param listener Told about the progress after each region, or null.
+     * @return The number of bytes transformed.
+     * @throws IOException
+     * @throws IllegalArgumentException
+     */
+    public static long transform(Path in, Path out, SDESKey key, boolean encrypt, long regionSize, SDESParallel parallel, ProgressListener listener) throws IOException, IllegalArgumentException {
+
+        //check for region sizes a single mapping cannot hold
+        if (regionSize < 1 || regionSize > Integer.MAX_VALUE) {
+
+            throw new IllegalArgumentException("Region size (" + regionSize + ") is out of bounds (1-" + Integer.MAX_VALUE + ")");
+
+        }
+
+        //truncating out would destroy in before it is read
+        if (Files.exists(out) && Files.isSameFile(in, out)) {
+
+            throw new IllegalArgumentException("Input and output are the same file (" + in + ")");
+
+        }
+
+        try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ);
+                FileChannel dst = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            long total = src.size();
+
+            //map and transform one region at a time, mapping past the end of dst extends it
+            for (long done = 0; done < total; ) {
+
+                long size = Math.min(regionSize, total - done);
+                MappedByteBuffer srcRegion = src.map(FileChannel.MapMode.READ_ONLY, done, size);
+                MappedByteBuffer dstRegion = dst.map(FileChannel.MapMode.READ_WRITE, done, size);
+
+                if (parallel != null) {
+
+                    if (encrypt) {
+
+                        parallel.encrypt(key, srcRegion, dstRegion);
+
+                    } else {
+
+                        parallel.decrypt(key, srcRegion, dstRegion);
+
+                    }
+
+                } else if (encrypt) {
+
+                    key.encrypt(srcRegion, dstRegion);
+
+                } else {
+
+                    key.decrypt(srcRegion, dstRegion);
+
+                }
+
+                done += size;
+
+                if (listener != null) {
+
+                    listener.progress(done, total);
+
+                }
+
+            }
+
+            return total;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,81 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that encrypts or decrypts everything read from the underlying stream. SDES works on each byte
+ * on its own, so bytes are transformed in place in the caller's array as they are read and no extra buffer is
+ * needed, whatever the size of the input.
+ */
+public class SDESInputStream extends FilterInputStream {
+
+    private final SDESKey key;
+    private final boolean encrypt; // true to encrypt what is read, false to decrypt it
+
+    /**
+     * @param in The stream to read from.
+     * @param key The key to transform with.
+     * @param encrypt True to encrypt, false to decrypt.
+     */
+    private SDESInputStream(InputStream in, SDESKey key, boolean encrypt) {
+
+        super(in);
+        this.key = key;
+        this.encrypt = encrypt;
+
+    }
+
+    /**
+     * @param in The plain text stream.
+     * @param key The key to encrypt with.
+     * @return A stream of the cipher text of in.
+     */
+    public static SDESInputStream encrypting(InputStream in, SDESKey key) {
+
+        return new SDESInputStream(in, key, true);
+
+    }
+
+    /**
+     * @param in The cipher text stream.
+     * @param key The key to decrypt with.
+     * @return A stream of the plain text of in.
+     */
+    public static SDESInputStream decrypting(InputStream in, SDESKey key) {
+
+        return new SDESInputStream(in, key, false);
+
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        int b = in.read();
+
+        //pass end of stream through unchanged
+        if (b < 0) {
+
+            return b;
+
+        }
+
+        return (encrypt ? key.encryptByte((byte) b) : key.decryptByte((byte) b)) & 0xFF;
+
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        int n = in.read(b, off, len);
+
+        if (n > 0) {
+
+            key.transform(encrypt, b, off, b, off, n);
+
+        }
+
+        return n;
+
+    }
+
+}
@@ -0,0 +1,643 @@
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.Charset;
+import java.util.Objects;
+
+/**
+ * Immutable 10-bit SDES key. The two subkeys and the encrypt/decrypt tables are computed once when the key is
+ * created, so a single SDESKey can be shared by any number of threads and encrypting or decrypting never expands
+ * the key again.
+ */
+public final class SDESKey {
+
+    private final boolean[] bits; // the 10 key bits, index 0 is the leftmost bit
+    private final SDESSpec spec; // the S-boxes and permutations this key encrypts with
+    private final int key1; // packed k1 subkey
+    private final int key2; // packed k2 subkey
+    private final byte[] encryptTable = new byte[256]; // cipher byte for every plain byte
+    private final byte[] decryptTable = new byte[256]; // plain byte for every cipher byte
+
+    /**
+     * @param bits The 10 key bits, true=1, false=0, index 0 is the leftmost bit.
+     * @throws IllegalArgumentException
+     * Create a key for standard SDES from a bit array. The array is copied.
+     */
+    public SDESKey(boolean[] bits) throws IllegalArgumentException {
+
+        this(bits, SDESSpec.STANDARD);
+
+    }
+
+    /**
+     * @param bits The 10 key bits, true=1, false=0, index 0 is the leftmost bit.
+     * @param spec The SDES variant to encrypt with.
+     * @throws IllegalArgumentException
+     * Create a key for an SDES variant from a bit array. The array is copied.
+     */
+    public SDESKey(boolean[] bits, SDESSpec spec) throws IllegalArgumentException {
+
+        //check for invalid length
+        if (bits.length != 10) {
+
+            throw SDESMetrics.error(new IllegalArgumentException("Key must be exactly 10 bits long (Size of bits: " + bits.length + ")"));
+
+        }
+
+        this.bits = bits.clone();
+        this.spec = spec;
+
+        int packed = SDESBits.toInt(bits);
+        this.key1 = spec.key1(packed);
+        this.key2 = spec.key2(packed);
+
+        //run every possible byte through the rounds once, the decrypt table is the inverse permutation
+        for (int i = 0; i < 256; i++) {
+
+            byte c = spec.encryptByte((byte) i, key1, key2);
+            encryptTable[i] = c;
+            decryptTable[c & 0xFF] = (byte) i;
+
+        }
+
+        if (SDESMetrics.ENABLED) {
+
+            SDESMetrics.keySchedule();
+
+        }
+
+    }
+
+    /**
+     * @param key The standard SDES key as an int, bit 9 is the leftmost key bit.
+     * @param tables The buffer holding the key's encrypt table followed by its decrypt table.
+     * @param off The index in tables of the first encrypt table entry.
+     * Create a key from tables computed earlier, such as those in an SDESTableFile, so no byte is run through the
+     * rounds. The tables are copied, not checked; the caller has verified them.
+     */
+    SDESKey(int key, ByteBuffer tables, int off) {
+
+        this.bits = SDESBits.toBits(key, 10);
+        this.spec = SDESSpec.STANDARD;
+        this.key1 = spec.key1(key);
+        this.key2 = spec.key2(key);
+        tables.get(off, encryptTable);
+        tables.get(off + 256, decryptTable);
+
+    }
+
+    /**
+     * @param key The key as an int, bit 9 is the leftmost key bit.
+     * @return The key.
+     * @throws IllegalArgumentException
+     * Create a key from the low 10 bits of an int, such as 0b1010101010.
+     */
+    public static SDESKey of(int key) throws IllegalArgumentException {
+
+        return of(key, SDESSpec.STANDARD);
+
+    }
+
+    /**
+     * @param key The key as an int, bit 9 is the leftmost key bit.
+     * @param spec The SDES variant to encrypt with.
+     * @return The key.
+     * @throws IllegalArgumentException
+     */
+    public static SDESKey of(int key, SDESSpec spec) throws IllegalArgumentException {
+
+        //check for values that do not fit in 10 bits
+        if (key < 0 || key > 0x3FF) {
+
+            throw SDESMetrics.error(new IllegalArgumentException("Key (" + key + ") is out of bounds (0-1023)"));
+
+        }
+
+        boolean[] bits = new boolean[10];
+
+        for (int i = 0; i < 10; i++) {
+
+            bits[i] = ((key >>> (9 - i)) & 1) == 1;
+
+        }
+
+        return new SDESKey(bits, spec);
+
+    }
+
+    /**
+     * @param key A string of exactly ten 0s and 1s, such as 1010101010.
+     * @return The key.
+     * @throws IllegalArgumentException
+     * Create a key from its bit string.
+     */
+    public static SDESKey parse(String key) throws IllegalArgumentException {
+
+        return parse(key, SDESSpec.STANDARD);
+
+    }
+
+    /**
+     * @param key A string of exactly ten 0s and 1s, such as 1010101010.
+     * @param spec The SDES variant to encrypt with.
+     * @return The key.
+     * @throws IllegalArgumentException
+     */
+    public static SDESKey parse(String key, SDESSpec spec) throws IllegalArgumentException {
+
+        return new SDESKey(parseBits(key), spec);
+
+    }
+
+    /**
+     * @param key A string of exactly ten 0s and 1s, such as 1010101010.
+     * @return The key as an int, without expanding it.
+     * @throws IllegalArgumentException
+     */
+    static int parseInt(String key) throws IllegalArgumentException {
+
+        return SDESBits.toInt(parseBits(key));
+
+    }
+
+    /**
+     * @param key A string of exactly ten 0s and 1s.
+     * @return The key bits.
+     * @throws IllegalArgumentException
+     */
+    private static boolean[] parseBits(String key) throws IllegalArgumentException {
+
+        //check for invalid length
+        if (key.length() != 10) {
+
+            throw SDESMetrics.error(new IllegalArgumentException("Key must be exactly 10 bits long (Length of key: " + key.length() + ")"));
+
+        }
+
+        return SDESCodec.parseBits(key);
+
+    }
+
+    /**
+     * @return A copy of the 10 key bits.
+     */
+    public boolean[] getBits() {
+
+        return bits.clone();
+
+    }
+
+    /**
+     * @return The SDES variant this key encrypts with.
+     */
+    public SDESSpec getSpec() {
+
+        return spec;
+
+    }
+
+    /**
+     * @return A copy of the k1 subkey.
+     */
+    public boolean[] getKey1() {
+
+        return SDESBits.toBits(key1, 8);
+
+    }
+
+    /**
+     * @return A copy of the k2 subkey.
+     */
+    public boolean[] getKey2() {
+
+        return SDESBits.toBits(key2, 8);
+
+    }
+
+    /**
+     * @return The key as an int in the range 0..1023, bit 9 is the leftmost key bit.
+     */
+    public int toInt() {
+
+        return SDESBits.toInt(bits);
+
+    }
+
+    /**
+     * @param b A single byte of plain text.
+     * @return The encrypted byte.
+     */
+    public byte encryptByte(byte b) {
+
+        if (SDESMetrics.ENABLED) {
+
+            long start = System.nanoTime();
+            byte result = encryptTable[b & 0xFF];
+            SDESMetrics.record(true, 1, start);
+
+            return result;
+
+        }
+
+        return encryptTable[b & 0xFF];
+
+    }
+
+    /**
+     * @param b A single byte of cipher text.
+     * @return The plain text byte.
+     */
+    public byte decryptByte(byte b) {
+
+        if (SDESMetrics.ENABLED) {
+
+            long start = System.nanoTime();
+            byte result = decryptTable[b & 0xFF];
+            SDESMetrics.record(false, 1, start);
+
+            return result;
+
+        }
+
+        return decryptTable[b & 0xFF];
+
+    }
+
+    /**
+     * @param plain The plain text bytes.
+     * @return A new array holding the cipher text, one byte per plain text byte.
+     */
+    public byte[] encrypt(byte[] plain) {
+
+        return lookup(encryptTable, plain);
+
+    }
+
+    /**
+     * @param msg The message to encrypt, converted to bytes with the platform default charset.
+     * @return A new array holding the cipher text, one byte per message byte.
+     */
+    public byte[] encrypt(String msg) {
+
+        byte[] result = msg.getBytes();
+        lookup(encryptTable, result, 0, result, 0, result.length);
+
+        return result;
+
+    }
+
+    /**
+     * @param msg The message to encrypt.
+     * @param charset The charset the message is converted to bytes with, unmappable chars are replaced.
+     * @return A new array holding the cipher text, one byte per encoded message byte.
+     * The encoded bytes are encrypted in place, so the result is the only array allocated. SDESStringCipher reuses
+     * its buffers across calls instead.
+     */
+    public byte[] encrypt(CharSequence msg, Charset charset) {
+
+        byte[] result = msg.toString().getBytes(charset);
+        lookup(encryptTable, result, 0, result, 0, result.length);
+
+        return result;
+
+    }
+
+    /**
+     * @param cipher The cipher text bytes.
+     * @return A new array holding the plain text, one byte per cipher text byte.
+     */
+    public byte[] decrypt(byte[] cipher) {
+
+        return lookup(decryptTable, cipher);
+
+    }
+
+    /**
+     * @param cipher The cipher text bytes.
+     * @param charset The charset the plain text bytes are decoded with, malformed input is replaced.
+     * @return The plain text message.
+     */
+    public String decryptToString(byte[] cipher, Charset charset) {
+
+        return new String(lookup(decryptTable, cipher), charset);
+
+    }
+
+    /**
+     * @param src The plain text bytes.
+     * @param srcOff The index of the first byte to encrypt.
+     * @param len The number of bytes to encrypt.
+     * @param dst The array the cipher text is written to, may be src itself, even with the ranges overlapping.
+     * @param dstOff The index in dst of the first cipher text byte.
+     * @throws IndexOutOfBoundsException
+     */
+    public void encrypt(byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+        lookup(encryptTable, src, srcOff, dst, dstOff, len);
+
+    }
+
+    /**
+     * @param src The cipher text bytes.
+     * @param srcOff The index of the first byte to decrypt.
+     * @param len The number of bytes to decrypt.
+     * @param dst The array the plain text is written to, may be src itself, even with the ranges overlapping.
+     * @param dstOff The index in dst of the first plain text byte.
+     * @throws IndexOutOfBoundsException
+     */
+    public void decrypt(byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+        lookup(decryptTable, src, srcOff, dst, dstOff, len);
+
+    }
+
+    /**
+     * @param buf The array holding the plain text, overwritten with the cipher text.
+     * @param off The index of the first byte to encrypt.
+     * @param len The number of bytes to encrypt.
+     * @throws IndexOutOfBoundsException
+     */
+    public void encryptInPlace(byte[] buf, int off, int len) throws IndexOutOfBoundsException {
+
+        encrypt(buf, off, len, buf, off);
+
+    }
+
+    /**
+     * @param buf The array holding the cipher text, overwritten with the plain text.
+     * @param off The index of the first byte to decrypt.
+     * @param len The number of bytes to decrypt.
+     * @throws IndexOutOfBoundsException
+     */
+    public void decryptInPlace(byte[] buf, int off, int len) throws IndexOutOfBoundsException {
+
+        decrypt(buf, off, len, buf, off);
+
+    }
+
+    /**
+     * @param src The plain text, all of its remaining bytes are encrypted and its position moves to its limit.
+     * @param dst The buffer the cipher text is written to at its position, which moves past the written bytes.
+     * @throws BufferOverflowException If dst has fewer bytes remaining than src.
+     * @throws ReadOnlyBufferException
+     * Heap and direct buffers are both read and written in place, nothing is copied to a temporary array. Heap
+     * buffers over the same array may overlap; direct buffers sharing memory, such as two slices of one mapping, may
+     * only be the same bytes exactly, since their addresses cannot be compared.
+     */
+    public void encrypt(ByteBuffer src, ByteBuffer dst) throws BufferOverflowException, ReadOnlyBufferException {
+
+        lookup(encryptTable, src, dst);
+
+    }
+
+    /**
+     * @param src The cipher text, all of its remaining bytes are decrypted and its position moves to its limit.
+     * @param dst The buffer the plain text is written to at its position, which moves past the written bytes.
+     * @throws BufferOverflowException If dst has fewer bytes remaining than src.
+     * @throws ReadOnlyBufferException
+     */
+    public void decrypt(ByteBuffer src, ByteBuffer dst) throws BufferOverflowException, ReadOnlyBufferException {
+
+        lookup(decryptTable, src, dst);
+
+    }
+
+    /**
+     * @param buf The buffer whose remaining bytes are encrypted in place. Its position is not changed.
+     * @throws ReadOnlyBufferException
+     */
+    public void encryptInPlace(ByteBuffer buf) throws ReadOnlyBufferException {
+
+        lookupInPlace(encryptTable, buf);
+
+    }
+
+    /**
+     * @param buf The buffer whose remaining bytes are decrypted in place. Its position is not changed.
+     * @throws ReadOnlyBufferException
+     */
+    public void decryptInPlace(ByteBuffer buf) throws ReadOnlyBufferException {
+
+        lookupInPlace(decryptTable, buf);
+
+    }
+
+    /**
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param src The bytes to transform.
+     * @param srcOff The index of the first byte to transform.
+     * @param dst The array to write the result to, may be src itself, even with the ranges overlapping.
+     * @param dstOff The index in dst of the first result byte.
+     * @param len The number of bytes to transform.
+     * Encrypt or decrypt a range of bytes without allocating. The caller checks the bounds.
+     */
+    void transform(boolean encrypt, byte[] src, int srcOff, byte[] dst, int dstOff, int len) {
+
+        lookup(encrypt ? encryptTable : decryptTable, src, srcOff, dst, dstOff, len);
+
+    }
+
+    /**
+     * @param encrypt True for the encrypt table, false for the decrypt table.
+     * @return The table itself, not a copy. Callers must not modify it.
+     */
+    byte[] table(boolean encrypt) {
+
+        return encrypt ? encryptTable : decryptTable;
+
+    }
+
+    /**
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param buf The buffer whose remaining bytes are transformed in place. Its position is not changed.
+     * @throws ReadOnlyBufferException
+     */
+    void transform(boolean encrypt, ByteBuffer buf) throws ReadOnlyBufferException {
+
+        lookupInPlace(encrypt ? encryptTable : decryptTable, buf);
+
+    }
+
+    /**
+     * @param table The encrypt or decrypt table.
+     * @param inp The bytes to transform.
+     * @return A new array where every byte of inp has been replaced by its table entry.
+     */
+    private byte[] lookup(byte[] table, byte[] inp) {
+
+        byte[] result = new byte[inp.length];
+        lookup(table, inp, 0, result, 0, inp.length);
+
+        return result;
+
+    }
+
+    /**
+     * @param table The encrypt or decrypt table.
+     * @param src The bytes to transform.
+     * @param srcOff The index of the first byte to transform.
+     * @param dst The array to write the result to, may be src itself, even with the ranges overlapping.
+     * @param dstOff The index in dst of the first result byte.
+     * @param len The number of bytes to transform.
+     */
+    private void lookup(byte[] table, byte[] src, int srcOff, byte[] dst, int dstOff, int len) {
+
+        long start = SDESMetrics.ENABLED ? System.nanoTime() : 0L;
+
+        //a range written further along the same array would overwrite bytes before they are read, so go backwards
+        if (src == dst && dstOff > srcOff && dstOff - srcOff < len) {
+
+            for (int i = len - 1; i >= 0; i--) {
+
+                dst[dstOff + i] = table[src[srcOff + i] & 0xFF];
+
+            }
+
+        } else {
+
+            for (int i = 0; i < len; i++) {
+
+                dst[dstOff + i] = table[src[srcOff + i] & 0xFF];
+
+            }
+
+        }
+
+        if (SDESMetrics.ENABLED) {
+
+            SDESMetrics.record(table == encryptTable, len, start);
+
+        }
+
+    }
+
+    /**
+     * @param table The encrypt or decrypt table.
+     * @param src The buffer whose remaining bytes are transformed, its position moves to its limit.
+     * @param dst The buffer the result is written to, its position moves past the written bytes.
+     * @throws BufferOverflowException
+     * @throws ReadOnlyBufferException
+     */
+    private void lookup(byte[] table, ByteBuffer src, ByteBuffer dst) throws BufferOverflowException, ReadOnlyBufferException {
+
+        int len = src.remaining();
+
+        //check that the whole result fits before touching either buffer
+        if (dst.isReadOnly()) {
+
+            throw new ReadOnlyBufferException();
+
+        }
+
+        if (dst.remaining() < len) {
+
+            throw new BufferOverflowException();
+
+        }
+
+        int srcPos = src.position();
+        int dstPos = dst.position();
+        lookup(table, src, srcPos, dst, dstPos, len);
+        src.position(srcPos + len);
+        dst.position(dstPos + len);
+
+    }
+
+    /**
+     * @param table The encrypt or decrypt table.
+     * @param buf The buffer whose remaining bytes are transformed in place, its position is not changed.
+     * @throws ReadOnlyBufferException
+     */
+    private void lookupInPlace(byte[] table, ByteBuffer buf) throws ReadOnlyBufferException {
+
+        if (buf.isReadOnly()) {
+
+            throw new ReadOnlyBufferException();
+
+        }
+
+        lookup(table, buf, buf.position(), buf, buf.position(), buf.remaining());
+
+    }
+
+    /**
+     * @param table The encrypt or decrypt table.
+     * @param src The buffer to read from, using absolute indices.
+     * @param srcPos The index of the first byte to transform.
+     * @param dst The buffer to write to, using absolute indices, may be src itself.
+     * @param dstPos The index in dst of the first result byte.
+     * @param len The number of bytes to transform.
+     * Buffers backed by an array go through the array loop, any other buffer (direct or read-only) is read and
+     * written eight bytes at a time.
+     */
+    private void lookup(byte[] table, ByteBuffer src, int srcPos, ByteBuffer dst, int dstPos, int len) {
+
+        if (src.hasArray() && dst.hasArray()) {
+
+            lookup(table, src.array(), src.arrayOffset() + srcPos, dst.array(), dst.arrayOffset() + dstPos, len);
+            return;
+
+        }
+
+        long start = SDESMetrics.ENABLED ? System.nanoTime() : 0L;
+        int i = 0;
+
+        //every byte is looked up on its own, so the byte order of the long does not matter
+        for (; i + 8 <= len; i += 8) {
+
+            long v = src.getLong(srcPos + i);
+            long result = 0;
+
+            for (int shift = 0; shift < 64; shift += 8) {
+
+                result |= (long) (table[(int) (v >>> shift) & 0xFF] & 0xFF) << shift;
+
+            }
+
+            dst.putLong(dstPos + i, result);
+
+        }
+
+        for (; i < len; i++) {
+
+            dst.put(dstPos + i, table[src.get(srcPos + i) & 0xFF]);
+
+        }
+
+        if (SDESMetrics.ENABLED) {
+
+            SDESMetrics.record(table == encryptTable, len, start);
+
+        }
+
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        return o instanceof SDESKey && java.util.Arrays.equals(bits, ((SDESKey) o).bits) && spec == ((SDESKey) o).spec;
+
+    }
+
+    @Override
+    public int hashCode() {
+
+        return toInt();
+
+    }
+
+    /**
+     * @return The key as a string of ten 0s and 1s.
+     */
+    @Override
+    public String toString() {
+
+        return SDESCodec.toBits(bits);
+
+    }
+
+}
@@ -0,0 +1,301 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * A shared, bounded cache of expanded keys, for workloads where many messages each carry their own 10-bit key.
+ * There are only 1024 keys, so every key has its own slot and a hit is a single array read with no locking. Misses
+ * take a lock, so no two threads ever expand the same key at the same time. When the cache is full the CLOCK
+ * (second chance) policy evicts a key that has not been used since the hand last passed it.
+ *
+ * All 1024 keys with their tables take about 512 KB; preloadAll fills the cache up front so switching keys never
+ * costs anything.
+ */
+public final class SDESKeyCache {
+
+    private static final SDESKeyCache SHARED = new SDESKeyCache(1024);
+
+    private final SDESSpec spec;
+    private final int maxSize;
+    private final AtomicReferenceArray<SDESKey> slots = new AtomicReferenceArray<>(1024);
+    private final boolean[] referenced = new boolean[1024]; // set on every hit, cleared as the clock hand passes
+    private final Object lock = new Object(); // guards size, hand and every change to slots
+    private int size;
+    private int hand; // the next slot the clock looks at when evicting
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize The most keys kept at once, 1..1024.
+     * @throws IllegalArgumentException
+     */
+    public SDESKeyCache(int maxSize) throws IllegalArgumentException {
+
+        this(SDESSpec.STANDARD, maxSize);
+
+    }
+
+    /**
+     * @param spec The SDES variant the cached keys encrypt with.
+     * @param maxSize The most keys kept at once, 1..1024.
+     * @throws IllegalArgumentException
+     */
+    public SDESKeyCache(SDESSpec spec, int maxSize) throws IllegalArgumentException {
+
+        //check for sizes that cannot hold a key or that exceed the key space
+        if (maxSize < 1 || maxSize > 1024) {
+
+            throw new IllegalArgumentException("Maximum size (" + maxSize + ") is out of bounds (1-1024)");
+
+        }
+
+        this.spec = spec;
+        this.maxSize = maxSize;
+
+    }
+
+    /**
+     * @return A process-wide cache of standard SDES keys with room for all 1024 keys.
+     */
+    public static SDESKeyCache shared() {
+
+        return SHARED;
+
+    }
+
+    /**
+     * @param key The key as an int, bit 9 is the leftmost key bit.
+     * @return The expanded key, computed at most once while it stays in the cache.
+     * @throws IllegalArgumentException
+     */
+    public SDESKey get(int key) throws IllegalArgumentException {
+
+        //check for values that do not fit in 10 bits
+        if (key < 0 || key > 0x3FF) {
+
+            throw new IllegalArgumentException("Key (" + key + ") is out of bounds (0-1023)");
+
+        }
+
+        SDESKey result = slots.get(key);
+
+        if (result != null) {
+
+            referenced[key] = true;
+            hits.increment();
+
+            if (SDESMetrics.ENABLED) {
+
+                SDESMetrics.cacheLookup(true);
+
+            }
+
+            return result;
+
+        }
+
+        synchronized (lock) {
+
+            //another thread may have loaded it while this one waited
+            result = slots.get(key);
+
+            if (result != null) {
+
+                referenced[key] = true;
+                hits.increment();
+
+                if (SDESMetrics.ENABLED) {
+
+                    SDESMetrics.cacheLookup(true);
+
+                }
+
+                return result;
+
+            }
+
+            misses.increment();
+
+            if (SDESMetrics.ENABLED) {
+
+                SDESMetrics.cacheLookup(false);
+
+            }
+
+            result = SDESKey.of(key, spec);
+            install(key, result);
+
+            return result;
+
+        }
+
+    }
+
+    /**
+     * @throws IllegalStateException If the cache cannot hold all 1024 keys.
+     * Expand every key that is not cached yet, in parallel, and add it to the cache.
+     */
+    public void preloadAll() throws IllegalStateException {
+
+        if (maxSize < 1024) {
+
+            throw new IllegalStateException("Cannot preload 1024 keys into a cache of " + maxSize);
+
+        }
+
+        SDESKey[] loaded = new SDESKey[1024];
+
+        IntStream.range(0, 1024).parallel()
+                .filter(k -> slots.get(k) == null)
+                .forEach(k -> loaded[k] = SDESKey.of(k, spec));
+
+        synchronized (lock) {
+
+            for (int k = 0; k < 1024; k++) {
+
+                if (loaded[k] != null && slots.get(k) == null) {
+
+                    install(k, loaded[k]);
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Remove every key from the cache. The counters are not reset.
+     */
+    public void clear() {
+
+        synchronized (lock) {
+
+            for (int k = 0; k < 1024; k++) {
+
+                slots.set(k, null);
+                referenced[k] = false;
+
+            }
+
+            size = 0;
+
+        }
+
+    }
+
+    /**
+     * @return The SDES variant the cached keys encrypt with.
+     */
+    public SDESSpec getSpec() {
+
+        return spec;
+
+    }
+
+    /**
+     * @return The most keys kept at once.
+     */
+    public int getMaxSize() {
+
+        return maxSize;
+
+    }
+
+    /**
+     * @return The number of keys in the cache now.
+     */
+    public int size() {
+
+        synchronized (lock) {
+
+            return size;
+
+        }
+
+    }
+
+    /**
+     * @return The number of lookups that found their key in the cache.
+     */
+    public long getHitCount() {
+
+        return hits.sum();
+
+    }
+
+    /**
+     * @return The number of lookups that had to expand their key.
+     */
+    public long getMissCount() {
+
+        return misses.sum();
+
+    }
+
+    /**
+     * @return The number of keys removed to make room for others.
+     */
+    public long getEvictionCount() {
+
+        return evictions.sum();
+
+    }
+
+    /**
+     * @param key The key as an int.
+     * @param value The expanded key.
+     * Add a key that is not in the cache, evicting another first if the cache is full. The caller holds the lock.
+     */
+    private void install(int key, SDESKey value) {
+
+        if (size == maxSize) {
+
+            evict();
+
+        }
+
+        referenced[key] = false;
+        slots.set(key, value);
+        size++;
+
+    }
+
+    /**
+     * Advance the clock hand to the first cached key that has not been used since the hand last passed it, giving
+     * every used key a second chance on the way, and remove it. The caller holds the lock.
+     */
+    private void evict() {
+
+        while (true) {
+
+            int k = hand;
+            hand = (hand + 1) & 0x3FF;
+
+            if (slots.get(k) == null) {
+
+                continue;
+
+            }
+
+            if (referenced[k]) {
+
+                referenced[k] = false;
+
+            } else {
+
+                slots.set(k, null);
+                size--;
+                evictions.increment();
+
+                return;
+
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,516 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Brute-force key recovery over all 1024 SDES keys, searched in parallel. SDES encrypts each byte on its own, so
+ * the work never depends on the message length: known plaintext is reduced to at most 256 distinct byte pairs, and
+ * cipher text is reduced to a histogram of its 256 byte values that each key's decrypt table permutes into the
+ * plain text histogram a scorer rates.
+ *
+ * Double SDES, two stages with their own keys as SDESCascade.ofDouble builds, is broken by meeting in the middle:
+ * 1024 encryptions of the known plain text and 1024 decryptions of its cipher text, matched through a small hash
+ * index, instead of trying all 2^20 key pairs.
+ */
+public final class SDESKeySearch {
+
+    /**
+     * Rates how likely a plain text is, higher is better.
+     */
+    public interface Scorer {
+
+        /**
+         * @param counts The number of times each byte value 0..255 occurs in the plain text.
+         * @param total The length of the plain text.
+         * @return The score of the plain text.
+         */
+        double score(long[] counts, long total);
+
+    }
+
+    /**
+     * Average log-likelihood of the plain text under a simple model of English: letters in either case at their
+     * usual frequencies, spaces, a little punctuation and digits, and almost never control or non-ASCII bytes.
+     */
+    public static final Scorer ENGLISH = new Scorer() {
+
+        private final double[] logP = englishModel();
+
+        @Override
+        public double score(long[] counts, long total) {
+
+            double sum = 0;
+
+            for (int b = 0; b < 256; b++) {
+
+                sum += counts[b] * logP[b];
+
+            }
+
+            return total == 0 ? 0 : sum / total;
+
+        }
+
+    };
+
+    private final SDESSpec spec;
+    private final SDESKeyCache keys; // every key with its tables, expanded once and shared by all searches
+
+    /**
+     * Search the keys of standard SDES.
+     */
+    public SDESKeySearch() {
+
+        this(SDESSpec.STANDARD);
+
+    }
+
+    /**
+     * @param spec The SDES variant the cipher text was made with.
+     */
+    public SDESKeySearch(SDESSpec spec) {
+
+        this.spec = spec;
+        this.keys = spec == SDESSpec.STANDARD ? SDESKeyCache.shared() : new SDESKeyCache(spec, 1024);
+
+    }
+
+    /**
+     * @param plain Known plain text.
+     * @param cipher The cipher text of plain, the same length.
+     * @return Every key that encrypts plain to cipher, in key order, each scored with the number of distinct byte
+     * pairs it was checked against.
+     * @throws IllegalArgumentException
+     */
+    public List<Candidate> knownPlaintext(byte[] plain, byte[] cipher) throws IllegalArgumentException {
+
+        int[] pairs = pairs(plain, cipher);
+
+        if (pairs == null) {
+
+            return new ArrayList<>();
+
+        }
+
+        keys.preloadAll();
+
+        return IntStream.range(0, 1024).parallel()
+                .mapToObj(keys::get)
+                .filter(key -> matches(key, pairs))
+                .map(key -> new Candidate(key, pairs.length))
+                .collect(Collectors.toList());
+
+    }
+
+    /**
+     * @param plain Known plain text.
+     * @param cipher The cipher text of plain, the same length.
+     * @return Some key that encrypts plain to cipher, the search stops as soon as one is found.
+     * @throws IllegalArgumentException
+     */
+    public Optional<SDESKey> findKey(byte[] plain, byte[] cipher) throws IllegalArgumentException {
+
+        int[] pairs = pairs(plain, cipher);
+
+        if (pairs == null) {
+
+            return Optional.empty();
+
+        }
+
+        keys.preloadAll();
+
+        return IntStream.range(0, 1024).parallel()
+                .mapToObj(keys::get)
+                .filter(key -> matches(key, pairs))
+                .findAny();
+
+    }
+
+    /**
+     * @param plain Known plain text.
+     * @param cipher The cipher text of plain under double SDES, two stages of two rounds with keys k1 then k2.
+     * @return Every key pair that encrypts plain to cipher, as a cascade, ordered by k1 and then k2. Up to four
+     * distinct byte pairs key the index, any further pairs filter the matches, so with five or more distinct bytes
+     * the true key pair is usually the only one left besides pairs equivalent to it on every byte.
+     * @throws IllegalArgumentException If plain and cipher differ in length or plain is empty.
+     * Encrypt the first byte pairs under every k1 and index the middle values, then decrypt them under every k2, in
+     * parallel, and look each result up in the index. The index holds 1024 entries in two int arrays, so the attack
+     * takes 2048 table walks and a little over 16 KB whatever the key space of the pair.
+     */
+    public List<SDESCascade> meetInTheMiddle(byte[] plain, byte[] cipher) throws IllegalArgumentException {
+
+        int[] pairs = pairs(plain, cipher);
+
+        if (pairs == null) {
+
+            return new ArrayList<>();
+
+        }
+
+        //check for no known bytes, every one of the 2^20 key pairs would match
+        if (pairs.length == 0) {
+
+            throw new IllegalArgumentException("Meet in the middle needs at least one byte of known plain text");
+
+        }
+
+        int indexed = Math.min(4, pairs.length);
+
+        keys.preloadAll();
+
+        //one half: the middle values of every k1, computed in parallel and then indexed
+        int[] middle = IntStream.range(0, 1024).parallel()
+                .map(k1 -> pack(keys.get(k1).table(true), pairs, indexed, 8))
+                .toArray();
+        MiddleIndex index = new MiddleIndex(middle);
+
+        //the other half: the middle values of every k2, looked up as they are computed
+        return IntStream.range(0, 1024).parallel()
+                .boxed()
+                .flatMap(k2 -> {
+
+                    byte[] decrypt = keys.get(k2).table(false);
+                    byte[] encrypt = keys.get(k2).table(true);
+
+                    return index.find(pack(decrypt, pairs, indexed, 0))
+                            .filter(k1 -> filter(keys.get(k1).table(true), encrypt, pairs, indexed))
+                            .mapToObj(k1 -> new SDESCascade(spec, 2, k1, k2));
+
+                })
+                .sorted(Comparator.comparingInt((SDESCascade c) -> c.getKeys()[0]).thenComparingInt(c -> c.getKeys()[1]))
+                .collect(Collectors.toList());
+
+    }
+
+    /**
+     * @param cipher Cipher text of unknown plain text.
+     * @param scorer Rates each candidate plain text, for example ENGLISH.
+     * @param limit The number of candidates to return.
+     * @return The limit best scoring keys, best first.
+     */
+    public List<Candidate> ciphertextOnly(byte[] cipher, Scorer scorer, int limit) {
+
+        long[] histogram = new long[256];
+
+        for (int i = 0; i < cipher.length; i++) {
+
+            histogram[cipher[i] & 0xFF]++;
+
+        }
+
+        long total = cipher.length;
+
+        keys.preloadAll();
+
+        return IntStream.range(0, 1024).parallel()
+                .mapToObj(k -> {
+
+                    SDESKey key = keys.get(k);
+                    long[] counts = new long[256];
+
+                    //the plain text histogram is the cipher text histogram permuted by the decrypt table
+                    for (int c = 0; c < 256; c++) {
+
+                        counts[key.decryptByte((byte) c) & 0xFF] += histogram[c];
+
+                    }
+
+                    return new Candidate(key, scorer.score(counts, total));
+
+                })
+                .sorted(Comparator.comparingDouble(Candidate::getScore).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+
+    }
+
+    /**
+     * @param plain Known plain text.
+     * @param cipher The cipher text of plain.
+     * @return The distinct pairs, each packed as plain << 8 | cipher, or null if one plain byte has two different
+     * cipher bytes, which no key can produce.
+     * @throws IllegalArgumentException
+     */
+    private static int[] pairs(byte[] plain, byte[] cipher) throws IllegalArgumentException {
+
+        //check for pairs of different lengths
+        if (plain.length != cipher.length) {
+
+            throw new IllegalArgumentException("Plain and cipher text are not the same length (Size of plain: " + plain.length + ", Size of cipher: " + cipher.length + ")");
+
+        }
+
+        int[] seen = new int[256]; // cipher byte + 1 for every plain byte seen so far, 0 if not seen
+        int count = 0;
+
+        for (int i = 0; i < plain.length; i++) {
+
+            int p = plain[i] & 0xFF;
+            int c = (cipher[i] & 0xFF) + 1;
+
+            if (seen[p] == 0) {
+
+                seen[p] = c;
+                count++;
+
+            } else if (seen[p] != c) {
+
+                return null;
+
+            }
+
+        }
+
+        int[] result = new int[count];
+        count = 0;
+
+        for (int p = 0; p < 256; p++) {
+
+            if (seen[p] != 0) {
+
+                result[count++] = (p << 8) | (seen[p] - 1);
+
+            }
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * @param key The key to check.
+     * @param pairs The packed plain/cipher byte pairs.
+     * @return True if key encrypts every pair, stopping at the first that does not match.
+     */
+    private static boolean matches(SDESKey key, int[] pairs) {
+
+        for (int i = 0; i < pairs.length; i++) {
+
+            if ((key.encryptByte((byte) (pairs[i] >>> 8)) & 0xFF) != (pairs[i] & 0xFF)) {
+
+                return false;
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * @param table An encrypt or decrypt table.
+     * @param pairs The packed plain/cipher byte pairs.
+     * @param n The number of pairs to pack, at most 4.
+     * @param shift 8 to run the plain bytes through table, 0 for the cipher bytes.
+     * @return The n table outputs packed into an int, the first in the lowest byte.
+     */
+    private static int pack(byte[] table, int[] pairs, int n, int shift) {
+
+        int result = 0;
+
+        for (int i = 0; i < n; i++) {
+
+            result |= (table[(pairs[i] >>> shift) & 0xFF] & 0xFF) << (8 * i);
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * @param first The encrypt table of k1.
+     * @param second The encrypt table of k2.
+     * @param pairs The packed plain/cipher byte pairs.
+     * @param from The index of the first pair not used by the index.
+     * @return True if the two tables in turn encrypt every remaining pair.
+     */
+    private static boolean filter(byte[] first, byte[] second, int[] pairs, int from) {
+
+        for (int i = from; i < pairs.length; i++) {
+
+            if ((second[first[pairs[i] >>> 8] & 0xFF] & 0xFF) != (pairs[i] & 0xFF)) {
+
+                return false;
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * @return The natural log of the probability of every byte value in English text.
+     */
+    private static double[] englishModel() {
+
+        //relative frequencies of a..z in English text
+        double[] letters = {8.2, 1.5, 2.8, 4.3, 12.7, 2.2, 2.0, 6.1, 7.0, 0.15, 0.77, 4.0, 2.4, 6.7, 7.5, 1.9, 0.095, 6.0, 6.3, 9.1, 2.8, 0.98, 2.4, 0.15, 2.0, 0.074};
+        double letterSum = 0;
+
+        for (int i = 0; i < letters.length; i++) {
+
+            letterSum += letters[i];
+
+        }
+
+        double[] p = new double[256];
+
+        for (int b = 0; b < 256; b++) {
+
+            p[b] = 1e-6; // control and non-ASCII bytes
+
+        }
+
+        //other printable ASCII, punctuation and digits share a small part
+        for (int b = 0x21; b < 0x7F; b++) {
+
+            p[b] = 0.03 / 94;
+
+        }
+
+        //lower case letters are far more common than upper case
+        for (int i = 0; i < 26; i++) {
+
+            p['a' + i] = 0.78 * letters[i] / letterSum;
+            p['A' + i] = 0.03 * letters[i] / letterSum;
+
+        }
+
+        p[' '] = 0.15;
+        p['\n'] = 0.01;
+
+        double[] logP = new double[256];
+
+        for (int b = 0; b < 256; b++) {
+
+            logP[b] = Math.log(p[b]);
+
+        }
+
+        return logP;
+
+    }
+
+    /**
+     * An open addressing hash index from the packed middle value of every key to the key, in two int arrays. Keys
+     * with the same middle value are stored in separate slots of the same probe sequence.
+     */
+    private static final class MiddleIndex {
+
+        private static final int BITS = 11; // 2048 slots, at most half of them used
+
+        private final int[] values = new int[1 << BITS];
+        private final int[] owners = new int[1 << BITS]; // key + 1, 0 for an empty slot
+
+        /**
+         * @param middle The middle value of every key, indexed by the key.
+         */
+        MiddleIndex(int[] middle) {
+
+            for (int k = 0; k < middle.length; k++) {
+
+                int slot = slot(middle[k]);
+
+                while (owners[slot] != 0) {
+
+                    slot = (slot + 1) & (owners.length - 1);
+
+                }
+
+                values[slot] = middle[k];
+                owners[slot] = k + 1;
+
+            }
+
+        }
+
+        /**
+         * @param value A middle value.
+         * @return Every key with that middle value.
+         */
+        IntStream find(int value) {
+
+            IntStream.Builder result = IntStream.builder();
+
+            for (int slot = slot(value); owners[slot] != 0; slot = (slot + 1) & (owners.length - 1)) {
+
+                if (values[slot] == value) {
+
+                    result.add(owners[slot] - 1);
+
+                }
+
+            }
+
+            return result.build();
+
+        }
+
+        /**
+         * @param value A middle value.
+         * @return The slot its probe sequence starts at.
+         */
+        private static int slot(int value) {
+
+            return (value * 0x9E3779B9) >>> (32 - BITS);
+
+        }
+
+    }
+
+    /**
+     * A key found by a search and its score.
+     */
+    public static final class Candidate {
+
+        private final SDESKey key;
+        private final double score;
+
+        /**
+         * @param key The key.
+         * @param score How well the key fits, higher is better.
+         */
+        public Candidate(SDESKey key, double score) {
+
+            this.key = key;
+            this.score = score;
+
+        }
+
+        /**
+         * @return The key.
+         */
+        public SDESKey getKey() {
+
+            return key;
+
+        }
+
+        /**
+         * @return How well the key fits, higher is better.
+         */
+        public double getScore() {
+
+            return score;
+
+        }
+
+        @Override
+        public String toString() {
+
+            return key + " (" + score + ")";
+
+        }
+
+    }
+
+}
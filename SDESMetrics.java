@@ -0,0 +1,616 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Optional counters and latency histograms for the cipher. Collection is switched on with the system property
+ * sdes.metrics=true when the JVM starts. ENABLED is a static final constant and every hook sits behind an
+ * if (SDESMetrics.ENABLED) test, so when it is off the JIT removes the hooks and the hot paths run exactly as
+ * without them.
+ *
+ * An operation is one contiguous range transformed by a key or an engine. Parallel transforms therefore count
+ * each range on its own. Latencies are kept per size class in power-of-two nanosecond buckets, so percentiles are
+ * exact to within a factor of two. Read everything with snapshot(), or over JMX as sdes:type=Metrics.
+ */
+public final class SDESMetrics {
+
+    /**
+     * True if metrics are collected, from the sdes.metrics system property.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("sdes.metrics");
+
+    private static final String[] SIZE_CLASSES = {"1-16", "17-256", "257-4K", "4K-64K", "64K-1M", "1M+"}; // each up to 16 times the one before
+
+    private static final int BUCKETS = 40; // bucket i counts latencies below 2^i ns, the last one everything longer
+
+    private static final LongAdder ENCRYPT_CALLS = new LongAdder();
+    private static final LongAdder ENCRYPT_BYTES = new LongAdder();
+    private static final LongAdder DECRYPT_CALLS = new LongAdder();
+    private static final LongAdder DECRYPT_BYTES = new LongAdder();
+    private static final LongAdder KEY_SCHEDULES = new LongAdder();
+    private static final LongAdder CACHE_HITS = new LongAdder();
+    private static final LongAdder CACHE_MISSES = new LongAdder();
+    private static final LongAdder ERRORS = new LongAdder();
+    private static final LongAdder[][] LATENCY = new LongAdder[SIZE_CLASSES.length][BUCKETS];
+    private static final LongAdder[] LATENCY_NANOS = new LongAdder[SIZE_CLASSES.length];
+
+    static {
+
+        for (int c = 0; c < SIZE_CLASSES.length; c++) {
+
+            LATENCY_NANOS[c] = new LongAdder();
+
+            for (int b = 0; b < BUCKETS; b++) {
+
+                LATENCY[c][b] = new LongAdder();
+
+            }
+
+        }
+
+        if (ENABLED) {
+
+            try {
+
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName("sdes:type=Metrics"));
+
+            } catch (JMException | SecurityException e) {
+
+                //metrics can still be pulled with snapshot()
+                System.err.println("SDES metrics are not registered with JMX: " + e);
+
+            }
+
+        }
+
+    }
+
+    private SDESMetrics() {
+
+    }
+
+    /**
+     * @return The names of the size classes, in the order of the latency histograms.
+     */
+    public static String[] getSizeClasses() {
+
+        return SIZE_CLASSES.clone();
+
+    }
+
+    /**
+     * @param encrypt True for an encryption, false for a decryption.
+     * @param bytes The number of bytes transformed.
+     * @param startNanos System.nanoTime() taken when the operation started.
+     * Count an operation and time it. Only called when ENABLED.
+     */
+    static void record(boolean encrypt, long bytes, long startNanos) {
+
+        long nanos = System.nanoTime() - startNanos;
+
+        if (encrypt) {
+
+            ENCRYPT_CALLS.increment();
+            ENCRYPT_BYTES.add(bytes);
+
+        } else {
+
+            DECRYPT_CALLS.increment();
+            DECRYPT_BYTES.add(bytes);
+
+        }
+
+        int c = sizeClass(bytes);
+        LATENCY[c][Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)))].increment();
+        LATENCY_NANOS[c].add(nanos);
+
+    }
+
+    /**
+     * Count a key expanded into subkeys and tables. Only called when ENABLED.
+     */
+    static void keySchedule() {
+
+        KEY_SCHEDULES.increment();
+
+    }
+
+    /**
+     * @param hit True if the key cache found the key, false if it had to expand it.
+     * Count a key cache lookup. Only called when ENABLED.
+     */
+    static void cacheLookup(boolean hit) {
+
+        if (hit) {
+
+            CACHE_HITS.increment();
+
+        } else {
+
+            CACHE_MISSES.increment();
+
+        }
+
+    }
+
+    /**
+     * @param e The exception about to be thrown.
+     * @return e, so the call can stand in a throw statement.
+     * Count an invalid argument when metrics are enabled.
+     */
+    static <T extends RuntimeException> T error(T e) {
+
+        if (ENABLED) {
+
+            ERRORS.increment();
+
+        }
+
+        return e;
+
+    }
+
+    /**
+     * @return The current values. Counters are read one after another while other threads may be adding to them,
+     * so a snapshot taken under load is consistent per counter, not across counters.
+     */
+    public static Snapshot snapshot() {
+
+        Histogram[] latency = new Histogram[SIZE_CLASSES.length];
+
+        for (int c = 0; c < latency.length; c++) {
+
+            long[] counts = new long[BUCKETS];
+
+            for (int b = 0; b < BUCKETS; b++) {
+
+                counts[b] = LATENCY[c][b].sum();
+
+            }
+
+            latency[c] = new Histogram(SIZE_CLASSES[c], counts, LATENCY_NANOS[c].sum());
+
+        }
+
+        return new Snapshot(ENCRYPT_CALLS.sum(), ENCRYPT_BYTES.sum(), DECRYPT_CALLS.sum(), DECRYPT_BYTES.sum(),
+                KEY_SCHEDULES.sum(), CACHE_HITS.sum(), CACHE_MISSES.sum(), ERRORS.sum(), latency);
+
+    }
+
+    /**
+     * Set every counter and histogram back to zero.
+     */
+    public static void reset() {
+
+        for (LongAdder a : new LongAdder[] {ENCRYPT_CALLS, ENCRYPT_BYTES, DECRYPT_CALLS, DECRYPT_BYTES, KEY_SCHEDULES, CACHE_HITS, CACHE_MISSES, ERRORS}) {
+
+            a.reset();
+
+        }
+
+        for (int c = 0; c < SIZE_CLASSES.length; c++) {
+
+            LATENCY_NANOS[c].reset();
+
+            for (int b = 0; b < BUCKETS; b++) {
+
+                LATENCY[c][b].reset();
+
+            }
+
+        }
+
+    }
+
+    /**
+     * @param bytes The size of an operation.
+     * @return The index of its size class.
+     */
+    private static int sizeClass(long bytes) {
+
+        if (bytes <= 16) {
+
+            return 0;
+
+        }
+
+        return Math.min(SIZE_CLASSES.length - 1, (63 - Long.numberOfLeadingZeros(bytes - 1)) / 4);
+
+    }
+
+    /**
+     * The values of all counters and histograms at one point in time.
+     */
+    public static final class Snapshot {
+
+        private final long encryptCalls;
+        private final long encryptBytes;
+        private final long decryptCalls;
+        private final long decryptBytes;
+        private final long keySchedules;
+        private final long cacheHits;
+        private final long cacheMisses;
+        private final long errors;
+        private final Histogram[] latency;
+
+        Snapshot(long encryptCalls, long encryptBytes, long decryptCalls, long decryptBytes, long keySchedules, long cacheHits, long cacheMisses, long errors, Histogram[] latency) {
+
+            this.encryptCalls = encryptCalls;
+            this.encryptBytes = encryptBytes;
+            this.decryptCalls = decryptCalls;
+            this.decryptBytes = decryptBytes;
+            this.keySchedules = keySchedules;
+            this.cacheHits = cacheHits;
+            this.cacheMisses = cacheMisses;
+            this.errors = errors;
+            this.latency = latency;
+
+        }
+
+        /**
+         * @return The number of encrypt operations.
+         */
+        public long getEncryptCalls() {
+
+            return encryptCalls;
+
+        }
+
+        /**
+         * @return The number of bytes encrypted.
+         */
+        public long getEncryptBytes() {
+
+            return encryptBytes;
+
+        }
+
+        /**
+         * @return The number of decrypt operations.
+         */
+        public long getDecryptCalls() {
+
+            return decryptCalls;
+
+        }
+
+        /**
+         * @return The number of bytes decrypted.
+         */
+        public long getDecryptBytes() {
+
+            return decryptBytes;
+
+        }
+
+        /**
+         * @return The number of keys expanded into subkeys and tables.
+         */
+        public long getKeySchedules() {
+
+            return keySchedules;
+
+        }
+
+        /**
+         * @return The number of key cache lookups that found their key.
+         */
+        public long getCacheHits() {
+
+            return cacheHits;
+
+        }
+
+        /**
+         * @return The number of key cache lookups that had to expand their key.
+         */
+        public long getCacheMisses() {
+
+            return cacheMisses;
+
+        }
+
+        /**
+         * @return The number of invalid arguments rejected.
+         */
+        public long getErrors() {
+
+            return errors;
+
+        }
+
+        /**
+         * @param sizeClass An index into getSizeClasses().
+         * @return The latencies of the operations in that size class.
+         * @throws IndexOutOfBoundsException
+         */
+        public Histogram getLatency(int sizeClass) throws IndexOutOfBoundsException {
+
+            return latency[sizeClass];
+
+        }
+
+        @Override
+        public String toString() {
+
+            StringBuilder sb = new StringBuilder();
+            sb.append("encrypt ").append(encryptCalls).append(" calls ").append(encryptBytes).append(" bytes, decrypt ")
+                    .append(decryptCalls).append(" calls ").append(decryptBytes).append(" bytes, key schedules ")
+                    .append(keySchedules).append(", cache ").append(cacheHits).append(" hits ").append(cacheMisses)
+                    .append(" misses, errors ").append(errors);
+
+            for (Histogram h : latency) {
+
+                if (h.getCount() > 0) {
+
+                    sb.append(System.lineSeparator()).append(h);
+
+                }
+
+            }
+
+            return sb.toString();
+
+        }
+
+    }
+
+    /**
+     * The latencies of one size class in power-of-two buckets.
+     */
+    public static final class Histogram {
+
+        private final String sizeClass;
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+
+        Histogram(String sizeClass, long[] counts, long totalNanos) {
+
+            long n = 0;
+
+            for (long c : counts) {
+
+                n += c;
+
+            }
+
+            this.sizeClass = sizeClass;
+            this.counts = counts;
+            this.count = n;
+            this.totalNanos = totalNanos;
+
+        }
+
+        /**
+         * @return The name of the size class.
+         */
+        public String getSizeClass() {
+
+            return sizeClass;
+
+        }
+
+        /**
+         * @return The number of operations timed.
+         */
+        public long getCount() {
+
+            return count;
+
+        }
+
+        /**
+         * @return The sum of all latencies in nanoseconds.
+         */
+        public long getTotalNanos() {
+
+            return totalNanos;
+
+        }
+
+        /**
+         * @return The mean latency in nanoseconds, 0 if nothing was timed.
+         */
+        public long getMeanNanos() {
+
+            return count == 0 ? 0 : totalNanos / count;
+
+        }
+
+        /**
+         * @param percentile The percentile, 0 to 100.
+         * @return The upper bound of the bucket holding that percentile in nanoseconds, 0 if nothing was timed.
+         */
+        public long getPercentileNanos(double percentile) {
+
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+
+            for (int b = 0; b < counts.length; b++) {
+
+                seen += counts[b];
+
+                if (seen >= rank && seen > 0) {
+
+                    return 1L << b;
+
+                }
+
+            }
+
+            return 0;
+
+        }
+
+        /**
+         * @return The count of each bucket, bucket i holds latencies below 2^i ns and at least 2^(i-1) ns.
+         */
+        public long[] getBucketCounts() {
+
+            return counts.clone();
+
+        }
+
+        @Override
+        public String toString() {
+
+            return sizeClass + " bytes: " + count + " ops, mean " + getMeanNanos() + " ns, p50 < " + getPercentileNanos(50)
+                    + " ns, p99 < " + getPercentileNanos(99) + " ns";
+
+        }
+
+    }
+
+    /**
+     * The JMX bean, each call reads a fresh snapshot.
+     */
+    private static final class Bean implements SDESMetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+
+            return ENABLED;
+
+        }
+
+        @Override
+        public long getEncryptCalls() {
+
+            return ENCRYPT_CALLS.sum();
+
+        }
+
+        @Override
+        public long getEncryptBytes() {
+
+            return ENCRYPT_BYTES.sum();
+
+        }
+
+        @Override
+        public long getDecryptCalls() {
+
+            return DECRYPT_CALLS.sum();
+
+        }
+
+        @Override
+        public long getDecryptBytes() {
+
+            return DECRYPT_BYTES.sum();
+
+        }
+
+        @Override
+        public long getKeySchedules() {
+
+            return KEY_SCHEDULES.sum();
+
+        }
+
+        @Override
+        public long getCacheHits() {
+
+            return CACHE_HITS.sum();
+
+        }
+
+        @Override
+        public long getCacheMisses() {
+
+            return CACHE_MISSES.sum();
+
+        }
+
+        @Override
+        public long getErrors() {
+
+            return ERRORS.sum();
+
+        }
+
+        @Override
+        public String[] getSizeClasses() {
+
+            return SIZE_CLASSES.clone();
+
+        }
+
+        @Override
+        public long[] getLatencyCounts() {
+
+            Snapshot s = snapshot();
+            long[] result = new long[SIZE_CLASSES.length];
+
+            for (int c = 0; c < result.length; c++) {
+
+                result[c] = s.getLatency(c).getCount();
+
+            }
+
+            return result;
+
+        }
+
+        @Override
+        public long[] getLatencyMeanNanos() {
+
+            Snapshot s = snapshot();
+            long[] result = new long[SIZE_CLASSES.length];
+
+            for (int c = 0; c < result.length; c++) {
+
+                result[c] = s.getLatency(c).getMeanNanos();
+
+            }
+
+            return result;
+
+        }
+
+        @Override
+        public long[] getLatency50thNanos() {
+
+            return percentiles(50);
+
+        }
+
+        @Override
+        public long[] getLatency99thNanos() {
+
+            return percentiles(99);
+
+        }
+
+        @Override
+        public void reset() {
+
+            SDESMetrics.reset();
+
+        }
+
+        /**
+         * @param percentile The percentile, 0 to 100.
+         * @return The percentile of each size class.
+         */
+        private static long[] percentiles(double percentile) {
+
+            Snapshot s = snapshot();
+            long[] result = new long[SIZE_CLASSES.length];
+
+            for (int c = 0; c < result.length; c++) {
+
+                result[c] = s.getLatency(c).getPercentileNanos(percentile);
+
+            }
+
+            return result;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,82 @@
+/**
+ * The JMX view of SDESMetrics, registered as sdes:type=Metrics when metrics are enabled. The latency arrays have one
+ * entry per size class, in the order of getSizeClasses.
+ */
+public interface SDESMetricsMXBean {
+
+    /**
+     * @return True if the sdes.metrics system property enabled collection.
+     */
+    boolean isEnabled();
+
+    /**
+     * @return The number of encrypt operations.
+     */
+    long getEncryptCalls();
+
+    /**
+     * @return The number of bytes encrypted.
+     */
+    long getEncryptBytes();
+
+    /**
+     * @return The number of decrypt operations.
+     */
+    long getDecryptCalls();
+
+    /**
+     * @return The number of bytes decrypted.
+     */
+    long getDecryptBytes();
+
+    /**
+     * @return The number of keys expanded into subkeys and tables.
+     */
+    long getKeySchedules();
+
+    /**
+     * @return The number of key cache lookups that found their key.
+     */
+    long getCacheHits();
+
+    /**
+     * @return The number of key cache lookups that had to expand their key.
+     */
+    long getCacheMisses();
+
+    /**
+     * @return The number of invalid arguments rejected.
+     */
+    long getErrors();
+
+    /**
+     * @return The names of the operation size classes.
+     */
+    String[] getSizeClasses();
+
+    /**
+     * @return The number of timed operations in each size class.
+     */
+    long[] getLatencyCounts();
+
+    /**
+     * @return The mean latency in nanoseconds of each size class.
+     */
+    long[] getLatencyMeanNanos();
+
+    /**
+     * @return The median latency in nanoseconds of each size class, to within a factor of two.
+     */
+    long[] getLatency50thNanos();
+
+    /**
+     * @return The 99th percentile latency in nanoseconds of each size class, to within a factor of two.
+     */
+    long[] getLatency99thNanos();
+
+    /**
+     * Set every counter and histogram back to zero.
+     */
+    void reset();
+
+}
@@ -0,0 +1,17 @@
+/**
+ * Modes of operation for SDES. A block is a single byte, so the IV or nonce is a single byte as well.
+ */
+public enum SDESMode {
+
+    /** Every byte is encrypted on its own, equal plain text bytes give equal cipher text bytes. */
+    ECB,
+    /** Each plain text byte is xored with the previous cipher text byte (the IV for the first) before encryption. */
+    CBC,
+    /** Each plain text byte is xored with the encryption of the previous cipher text byte (the IV for the first). */
+    CFB,
+    /** The plain text is xored with the IV encrypted again and again; the key stream repeats after at most 256 bytes. */
+    OFB,
+    /** The plain text is xored with the encryption of nonce + position; the key stream repeats every 256 bytes. */
+    CTR
+
+}
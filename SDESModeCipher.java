@@ -0,0 +1,355 @@
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * SDES with a mode of operation and an IV (the nonce in CTR mode). Every encrypt and decrypt call handles one
+ * whole message starting from the IV, so an instance is immutable and can be shared between threads.
+ *
+ * A block is one byte, so the OFB and CTR key streams repeat after at most 256 bytes; they are generated once, ahead
+ * of any data, and every message is xored with them in bulk. That makes OFB and CTR, like ECB, independent per byte
+ * position, and CBC and CFB decryption only ever read cipher text, so all of these run in parallel when a
+ * SDESParallel is given. CBC and CFB encryption are inherently sequential.
+ */
+public final class SDESModeCipher {
+
+    private final SDESKey key;
+    private final SDESMode mode;
+    private final byte iv; // IV, or the nonce in CTR mode
+    private final SDESParallel parallel; // null to always run on the calling thread
+    private final byte[] keyStream; // one period of the OFB or CTR key stream, null in the other modes
+
+    /**
+     * @param key The key to encrypt and decrypt with.
+     * @param mode The mode of operation.
+     * @param iv The IV, or the nonce in CTR mode. Ignored in ECB mode.
+     */
+    public SDESModeCipher(SDESKey key, SDESMode mode, byte iv) {
+
+        this(key, mode, iv, null);
+
+    }
+
+    /**
+     * @param key The key to encrypt and decrypt with.
+     * @param mode The mode of operation.
+     * @param iv The IV, or the nonce in CTR mode. Ignored in ECB mode.
+     * @param parallel Runs large messages on several threads where the mode allows it, or null.
+     */
+    public SDESModeCipher(SDESKey key, SDESMode mode, byte iv, SDESParallel parallel) {
+
+        this.key = Objects.requireNonNull(key, "key");
+        this.mode = Objects.requireNonNull(mode, "mode");
+        this.iv = iv;
+        this.parallel = parallel;
+        this.keyStream = mode == SDESMode.OFB ? ofbKeyStream(key, iv) : mode == SDESMode.CTR ? ctrKeyStream(key, iv) : null;
+
+    }
+
+    /**
+     * @return The key.
+     */
+    public SDESKey getKey() {
+
+        return key;
+
+    }
+
+    /**
+     * @return The mode of operation.
+     */
+    public SDESMode getMode() {
+
+        return mode;
+
+    }
+
+    /**
+     * @return The IV, or the nonce in CTR mode.
+     */
+    public byte getIv() {
+
+        return iv;
+
+    }
+
+    /**
+     * @param plain The plain text message.
+     * @return A new array holding the cipher text.
+     */
+    public byte[] encrypt(byte[] plain) {
+
+        byte[] result = new byte[plain.length];
+        encrypt(plain, 0, plain.length, result, 0);
+
+        return result;
+
+    }
+
+    /**
+     * @param cipher The cipher text message.
+     * @return A new array holding the plain text.
+     */
+    public byte[] decrypt(byte[] cipher) {
+
+        byte[] result = new byte[cipher.length];
+        decrypt(cipher, 0, cipher.length, result, 0);
+
+        return result;
+
+    }
+
+    /**
+     * @param src The plain text message.
+     * @param srcOff The index of the first byte of the message.
+     * @param len The length of the message.
+     * @param dst The array the cipher text is written to, may be src itself.
+     * @param dstOff The index in dst of the first cipher text byte.
+     * @throws IndexOutOfBoundsException
+     */
+    public void encrypt(byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        transform(true, src, srcOff, len, dst, dstOff);
+
+    }
+
+    /**
+     * @param src The cipher text message.
+     * @param srcOff The index of the first byte of the message.
+     * @param len The length of the message.
+     * @param dst The array the plain text is written to, may be src itself.
+     * @param dstOff The index in dst of the first plain text byte.
+     * @throws IndexOutOfBoundsException
+     */
+    public void decrypt(byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        transform(false, src, srcOff, len, dst, dstOff);
+
+    }
+
+    /**
+     * @param plain The plain text of a chunk of a message, starting where this cipher's IV applies.
+     * @param plainOff The index of the first plain text byte.
+     * @param cipher The cipher text of the same chunk.
+     * @param cipherOff The index of the first cipher text byte.
+     * @param len The length of the chunk.
+     * @return The cipher that continues the message after the chunk, so a long message can be transformed one chunk
+     * at a time. Its IV is the last cipher text byte in CBC and CFB, the last key stream byte in OFB and the nonce
+     * advanced by len in CTR; ECB has no state.
+     */
+    SDESModeCipher next(byte[] plain, int plainOff, byte[] cipher, int cipherOff, int len) {
+
+        if (len == 0 || mode == SDESMode.ECB) {
+
+            return this;
+
+        }
+
+        byte last = cipher[cipherOff + len - 1];
+
+        switch (mode) {
+
+            case OFB:
+                return new SDESModeCipher(key, mode, (byte) (plain[plainOff + len - 1] ^ last), parallel);
+
+            case CTR:
+                return new SDESModeCipher(key, mode, (byte) (iv + len), parallel);
+
+            default:
+                return new SDESModeCipher(key, mode, last, parallel);
+
+        }
+
+    }
+
+    /**
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param src The message.
+     * @param srcOff The index of the first byte of the message.
+     * @param len The length of the message.
+     * @param dst The array the result is written to.
+     * @param dstOff The index in dst of the first result byte.
+     * @throws IndexOutOfBoundsException
+     */
+    private void transform(boolean encrypt, byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+
+        //every loop below reads byte i before writing byte i, which is only safe when dst does not run ahead of src
+        if (src == dst && dstOff > srcOff) {
+
+            src = Arrays.copyOfRange(src, srcOff, srcOff + len);
+            srcOff = 0;
+
+        }
+
+        //ranges on different threads must not overwrite bytes another range still has to read
+        boolean canSplit = parallel != null && (src != dst || (srcOff == dstOff && mode != SDESMode.CBC && mode != SDESMode.CFB));
+        byte[] from = src;
+        int fromOff = srcOff;
+
+        switch (mode) {
+
+            case ECB:
+            case OFB:
+            case CTR:
+
+                if (canSplit) {
+
+                    parallel.run(len, (off, n) -> positional(encrypt, from, fromOff + off, dst, dstOff + off, off, n));
+
+                } else {
+
+                    positional(encrypt, from, fromOff, dst, dstOff, 0, len);
+
+                }
+
+                break;
+
+            case CBC:
+            case CFB:
+
+                if (encrypt) {
+
+                    chainEncrypt(from, fromOff, dst, dstOff, len);
+
+                } else if (canSplit) {
+
+                    parallel.run(len, (off, n) -> chainDecrypt(from, fromOff + off, dst, dstOff + off, n, off == 0 ? iv : from[fromOff + off - 1]));
+
+                } else {
+
+                    chainDecrypt(from, fromOff, dst, dstOff, len, iv);
+
+                }
+
+                break;
+
+        }
+
+    }
+
+    /**
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param src The message.
+     * @param srcOff The index in src of the first byte of the range.
+     * @param dst The array the result is written to.
+     * @param dstOff The index in dst of the first result byte.
+     * @param pos The position of the range in the message, which selects the key stream byte.
+     * @param len The length of the range.
+     * ECB, OFB and CTR transform every byte from its position alone.
+     */
+    private void positional(boolean encrypt, byte[] src, int srcOff, byte[] dst, int dstOff, int pos, int len) {
+
+        if (mode == SDESMode.ECB) {
+
+            key.transform(encrypt, src, srcOff, dst, dstOff, len);
+            return;
+
+        }
+
+        //encryption and decryption are the same xor with the key stream
+        byte[] stream = keyStream;
+        int period = stream.length;
+        int k = pos % period;
+
+        for (int i = 0; i < len; i++) {
+
+            dst[dstOff + i] = (byte) (src[srcOff + i] ^ stream[k]);
+
+            if (++k == period) {
+
+                k = 0;
+
+            }
+
+        }
+
+    }
+
+    /**
+     * @param src The plain text.
+     * @param srcOff The index of the first plain text byte.
+     * @param dst The array the cipher text is written to.
+     * @param dstOff The index in dst of the first cipher text byte.
+     * @param len The length of the message.
+     * CBC or CFB encryption, each byte depends on the cipher text byte before it.
+     */
+    private void chainEncrypt(byte[] src, int srcOff, byte[] dst, int dstOff, int len) {
+
+        byte prev = iv;
+
+        for (int i = 0; i < len; i++) {
+
+            byte p = src[srcOff + i];
+            prev = mode == SDESMode.CBC ? key.encryptByte((byte) (p ^ prev)) : (byte) (p ^ key.encryptByte(prev));
+            dst[dstOff + i] = prev;
+
+        }
+
+    }
+
+    /**
+     * @param src The cipher text.
+     * @param srcOff The index of the first cipher text byte of the range.
+     * @param dst The array the plain text is written to.
+     * @param dstOff The index in dst of the first plain text byte.
+     * @param len The length of the range.
+     * @param prev The cipher text byte before the range, or the IV at the start of the message.
+     * CBC or CFB decryption, each byte only needs its own and the previous cipher text byte.
+     */
+    private void chainDecrypt(byte[] src, int srcOff, byte[] dst, int dstOff, int len, byte prev) {
+
+        for (int i = 0; i < len; i++) {
+
+            byte c = src[srcOff + i];
+            dst[dstOff + i] = mode == SDESMode.CBC ? (byte) (key.decryptByte(c) ^ prev) : (byte) (c ^ key.encryptByte(prev));
+            prev = c;
+
+        }
+
+    }
+
+    /**
+     * @param key The key.
+     * @param iv The IV.
+     * @return One full period of the OFB key stream. Encryption is a permutation of the byte values, so repeatedly
+     * encrypting the IV comes back to the IV after at most 256 steps and the stream repeats from there.
+     */
+    private static byte[] ofbKeyStream(SDESKey key, byte iv) {
+
+        byte[] stream = new byte[256];
+        byte x = iv;
+        int period = 0;
+
+        do {
+
+            x = key.encryptByte(x);
+            stream[period++] = x;
+
+        } while (x != iv);
+
+        return Arrays.copyOf(stream, period);
+
+    }
+
+    /**
+     * @param key The key.
+     * @param nonce The nonce.
+     * @return The 256 byte CTR key stream, the encryption of nonce + position for every position.
+     */
+    private static byte[] ctrKeyStream(SDESKey key, byte nonce) {
+
+        byte[] stream = new byte[256];
+
+        for (int i = 0; i < 256; i++) {
+
+            stream[i] = key.encryptByte((byte) (nonce + i));
+
+        }
+
+        return stream;
+
+    }
+
+}
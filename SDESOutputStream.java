@@ -0,0 +1,116 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * An output stream that encrypts or decrypts everything written to it before passing it to the underlying stream.
+ * The caller's array is never modified; data is transformed through one fixed-size buffer that is reused for every
+ * write, so memory use does not depend on how much is written.
+ */
+public class SDESOutputStream extends FilterOutputStream {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final SDESKey key;
+    private final boolean encrypt; // true to encrypt what is written, false to decrypt it
+    private final byte[] buffer; // transformed bytes waiting to be written to out
+
+    /**
+     * @param out The stream to write to.
+     * @param key The key to transform with.
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param bufferSize The size of the transform buffer.
+     * @throws IllegalArgumentException
+     */
+    private SDESOutputStream(OutputStream out, SDESKey key, boolean encrypt, int bufferSize) throws IllegalArgumentException {
+
+        super(out);
+
+        //check for invalid buffer sizes
+        if (bufferSize < 1) {
+
+            throw new IllegalArgumentException("Buffer size (" + bufferSize + ") must be at least 1");
+
+        }
+
+        this.key = key;
+        this.encrypt = encrypt;
+        this.buffer = new byte[bufferSize];
+
+    }
+
+    /**
+     * @param out The stream the cipher text is written to.
+     * @param key The key to encrypt with.
+     * @return A stream that encrypts everything written to it.
+     */
+    public static SDESOutputStream encrypting(OutputStream out, SDESKey key) {
+
+        return new SDESOutputStream(out, key, true, DEFAULT_BUFFER_SIZE);
+
+    }
+
+    /**
+     * @param out The stream the cipher text is written to.
+     * @param key The key to encrypt with.
+     * @param bufferSize The size of the transform buffer.
+     * @return A stream that encrypts everything written to it.
+     * @throws IllegalArgumentException
+     */
+    public static SDESOutputStream encrypting(OutputStream out, SDESKey key, int bufferSize) throws IllegalArgumentException {
+
+        return new SDESOutputStream(out, key, true, bufferSize);
+
+    }
+
+    /**
+     * @param out The stream the plain text is written to.
+     * @param key The key to decrypt with.
+     * @return A stream that decrypts everything written to it.
+     */
+    public static SDESOutputStream decrypting(OutputStream out, SDESKey key) {
+
+        return new SDESOutputStream(out, key, false, DEFAULT_BUFFER_SIZE);
+
+    }
+
+    /**
+     * @param out The stream the plain text is written to.
+     * @param key The key to decrypt with.
+     * @param bufferSize The size of the transform buffer.
+     * @return A stream that decrypts everything written to it.
+     * @throws IllegalArgumentException
+     */
+    public static SDESOutputStream decrypting(OutputStream out, SDESKey key, int bufferSize) throws IllegalArgumentException {
+
+        return new SDESOutputStream(out, key, false, bufferSize);
+
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+
+        out.write(encrypt ? key.encryptByte((byte) b) : key.decryptByte((byte) b));
+
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+
+        Objects.checkFromIndexSize(off, len, b.length);
+
+        //transform and write one buffer at a time
+        while (len > 0) {
+
+            int n = Math.min(len, buffer.length);
+            key.transform(encrypt, b, off, buffer, 0, n);
+            out.write(buffer, 0, n);
+            off += n;
+            len -= n;
+
+        }
+
+    }
+
+}
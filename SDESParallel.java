@@ -0,0 +1,306 @@
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel bulk encryption. SDES has no chaining, every byte is encrypted on its own, so a large buffer is split
+ * into ranges that are transformed on different threads and the result is byte for byte the same as the sequential
+ * SDESKey methods. Ranges are never smaller than the threshold, so small inputs stay on the calling thread.
+ */
+public final class SDESParallel {
+
+    public static final int DEFAULT_THRESHOLD = 256 * 1024;
+
+    private static final SDESParallel COMMON = new SDESParallel(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+
+    private final Executor executor; // a ForkJoinPool is split recursively, any other executor gets fixed chunks
+    private final int threshold; // the smallest range handed to a thread
+
+    /**
+     * @param executor The executor to run ranges on, a ForkJoinPool or any other executor.
+     * @param threshold The minimum number of bytes per range, at least 1.
+     * @throws IllegalArgumentException
+     */
+    public SDESParallel(Executor executor, int threshold) throws IllegalArgumentException {
+
+        //check for invalid thresholds
+        if (threshold < 1) {
+
+            throw new IllegalArgumentException("Threshold (" + threshold + ") must be at least 1");
+
+        }
+
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.threshold = threshold;
+
+    }
+
+    /**
+     * @return An instance running on the common ForkJoinPool with the default threshold.
+     */
+    public static SDESParallel common() {
+
+        return COMMON;
+
+    }
+
+    /**
+     * @return The minimum number of bytes per range.
+     */
+    public int getThreshold() {
+
+        return threshold;
+
+    }
+
+    /**
+     * @param key The key to encrypt with.
+     * @param plain The plain text bytes.
+     * @return A new array holding the cipher text.
+     */
+    public byte[] encrypt(SDESKey key, byte[] plain) {
+
+        byte[] result = new byte[plain.length];
+        encrypt(key, plain, 0, plain.length, result, 0);
+
+        return result;
+
+    }
+
+    /**
+     * @param key The key to decrypt with.
+     * @param cipher The cipher text bytes.
+     * @return A new array holding the plain text.
+     */
+    public byte[] decrypt(SDESKey key, byte[] cipher) {
+
+        byte[] result = new byte[cipher.length];
+        decrypt(key, cipher, 0, cipher.length, result, 0);
+
+        return result;
+
+    }
+
+    /**
+     * @param key The key to encrypt with.
+     * @param src The plain text bytes.
+     * @param srcOff The index of the first byte to encrypt.
+     * @param len The number of bytes to encrypt.
+     * @param dst The array the cipher text is written to, may be src itself.
+     * @param dstOff The index in dst of the first cipher text byte.
+     * @throws IndexOutOfBoundsException
+     */
+    public void encrypt(SDESKey key, byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        transform(key, true, src, srcOff, len, dst, dstOff);
+
+    }
+
+    /**
+     * @param key The key to decrypt with.
+     * @param src The cipher text bytes.
+     * @param srcOff The index of the first byte to decrypt.
+     * @param len The number of bytes to decrypt.
+     * @param dst The array the plain text is written to, may be src itself.
+     * @param dstOff The index in dst of the first plain text byte.
+     * @throws IndexOutOfBoundsException
+     */
+    public void decrypt(SDESKey key, byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        transform(key, false, src, srcOff, len, dst, dstOff);
+
+    }
+
+    /**
+     * @param key The key to encrypt with.
+     * @param src The plain text, all of its remaining bytes are encrypted and its position moves to its limit.
+     * @param dst The buffer the cipher text is written to at its position, which moves past the written bytes.
+     * @throws BufferOverflowException
+     * @throws ReadOnlyBufferException
+     */
+    public void encrypt(SDESKey key, ByteBuffer src, ByteBuffer dst) throws BufferOverflowException, ReadOnlyBufferException {
+
+        transform(key, true, src, dst);
+
+    }
+
+    /**
+     * @param key The key to decrypt with.
+     * @param src The cipher text, all of its remaining bytes are decrypted and its position moves to its limit.
+     * @param dst The buffer the plain text is written to at its position, which moves past the written bytes.
+     * @throws BufferOverflowException
+     * @throws ReadOnlyBufferException
+     */
+    public void decrypt(SDESKey key, ByteBuffer src, ByteBuffer dst) throws BufferOverflowException, ReadOnlyBufferException {
+
+        transform(key, false, src, dst);
+
+    }
+
+    /**
+     * @param key The key to transform with.
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param src The bytes to transform.
+     * @param srcOff The index of the first byte to transform.
+     * @param len The number of bytes to transform.
+     * @param dst The array to write the result to.
+     * @param dstOff The index in dst of the first result byte.
+     * @throws IndexOutOfBoundsException
+     */
+    private void transform(SDESKey key, boolean encrypt, byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+        run(len, (off, n) -> key.transform(encrypt, src, srcOff + off, dst, dstOff + off, n));
+
+    }
+
+    /**
+     * @param key The key to transform with.
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param src The buffer whose remaining bytes are transformed.
+     * @param dst The buffer to write the result to.
+     * @throws BufferOverflowException
+     * @throws ReadOnlyBufferException
+     */
+    private void transform(SDESKey key, boolean encrypt, ByteBuffer src, ByteBuffer dst) throws BufferOverflowException, ReadOnlyBufferException {
+
+        int len = src.remaining();
+
+        //check that the whole result fits before touching either buffer
+        if (dst.isReadOnly()) {
+
+            throw new ReadOnlyBufferException();
+
+        }
+
+        if (dst.remaining() < len) {
+
+            throw new BufferOverflowException();
+
+        }
+
+        int srcPos = src.position();
+        int dstPos = dst.position();
+
+        //every range works on its own slices, so the shared buffers' positions are never touched concurrently
+        run(len, (off, n) -> {
+
+            ByteBuffer from = src.slice(srcPos + off, n);
+            ByteBuffer to = dst.slice(dstPos + off, n);
+
+            if (encrypt) {
+
+                key.encrypt(from, to);
+
+            } else {
+
+                key.decrypt(from, to);
+
+            }
+
+        });
+
+        src.position(srcPos + len);
+        dst.position(dstPos + len);
+
+    }
+
+    /**
+     * @param len The total number of bytes.
+     * @param range Transforms the bytes at offsets off..off+n-1.
+     * Split 0..len-1 into ranges of at least threshold bytes, or keep it whole if it is shorter than that, and wait
+     * until every range has been transformed.
+     */
+    void run(int len, Range range) {
+
+        //small inputs are not worth handing to another thread, and a range of less than twice the threshold cannot
+        //be split without a part falling under it
+        if (len / 2 < threshold) {
+
+            range.apply(0, len);
+            return;
+
+        }
+
+        if (executor instanceof ForkJoinPool) {
+
+            ((ForkJoinPool) executor).invoke(new Split(range, 0, len, threshold));
+            return;
+
+        }
+
+        //a plain executor gets a fixed number of chunks, a few per core so a slow thread does not hold up the rest;
+        //the bounds are spread proportionally so every chunk gets at least threshold bytes and none runs past len
+        int chunks = (int) Math.min(len / threshold, 4L * Runtime.getRuntime().availableProcessors());
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks];
+
+        for (int i = 0; i < chunks; i++) {
+
+            int off = (int) ((long) i * len / chunks);
+            int end = (int) ((long) (i + 1) * len / chunks);
+            futures[i] = CompletableFuture.runAsync(() -> range.apply(off, end - off), executor);
+
+        }
+
+        CompletableFuture.allOf(futures).join();
+
+    }
+
+    /**
+     * Transforms one range of the input.
+     */
+    interface Range {
+
+        /**
+         * @param off The offset of the first byte, relative to the start of the input.
+         * @param n The number of bytes.
+         */
+        void apply(int off, int n);
+
+    }
+
+    /**
+     * Halves its range while both halves would still hold at least the threshold, then transforms it.
+     */
+    private static final class Split extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Range range;
+        private final int off;
+        private final int len;
+        private final int threshold;
+
+        Split(Range range, int off, int len, int threshold) {
+
+            this.range = range;
+            this.off = off;
+            this.len = len;
+            this.threshold = threshold;
+
+        }
+
+        @Override
+        protected void compute() {
+
+            if (len / 2 < threshold) {
+
+                range.apply(off, len);
+                return;
+
+            }
+
+            int half = len >>> 1;
+            invokeAll(new Split(range, off, half, threshold), new Split(range, off + half, len - half, threshold));
+
+        }
+
+    }
+
+}
@@ -0,0 +1,465 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A small embeddable cipher server, so several processes share one warmed-up JVM and SDESKeyCache.shared(). It
+ * listens on a localhost TCP port or a Unix domain socket and serves each connection with blocking NIO on its own
+ * thread: a virtual thread when the JVM has them (Java 21 and later), otherwise a thread from a cached pool.
+ *
+ * Frames are big-endian. A request is an int giving the number of bytes that follow, then op (1 encrypt,
+ * 2 decrypt), a short key (0-1023), mode (the SDESMode ordinal), iv, and the payload. A response is an int giving
+ * the number of bytes that follow, then status (0 ok, 1 error), and the result or a UTF-8 error message. Clients may
+ * pipeline requests; every complete request in a read is answered in a single write. A request too large for the
+ * connection buffer is streamed through it chunk by chunk, with the mode's state carried from chunk to chunk.
+ * SDESClient speaks this protocol.
+ */
+public final class SDESServer implements Closeable {
+
+    public static final byte ENCRYPT = 1;
+    public static final byte DECRYPT = 2;
+    public static final byte OK = 0;
+    public static final byte ERROR = 1;
+    public static final int MAX_FRAME = 1 << 30; // the largest frame length accepted
+
+    static final int HEADER = 9; // frame length, op, key, mode and iv
+    static final int RESPONSE_HEADER = 5; // frame length and status
+    static final int BUFFER_SIZE = 64 * 1024; // a frame larger than this is streamed instead of answered whole
+
+    private static final SDESMode[] MODES = SDESMode.values();
+
+    private final ServerSocketChannel server;
+    private final SocketAddress address;
+    private final ExecutorService executor;
+    private final Thread acceptor;
+
+    /**
+     * @param server The bound channel.
+     * @param executor Runs one task per connection.
+     */
+    private SDESServer(ServerSocketChannel server, ExecutorService executor) throws IOException {
+
+        this.server = server;
+        this.address = server.getLocalAddress();
+        this.executor = executor;
+        this.acceptor = new Thread(this::accept, "sdes-server-accept");
+        this.acceptor.setDaemon(true);
+
+    }
+
+    /**
+     * @param address An InetSocketAddress, port 0 picks a free port, or a UnixDomainSocketAddress whose file must not
+     * exist yet.
+     * @return The running server.
+     * @throws IOException
+     */
+    public static SDESServer start(SocketAddress address) throws IOException {
+
+        ServerSocketChannel channel = address instanceof UnixDomainSocketAddress ? ServerSocketChannel.open(StandardProtocolFamily.UNIX) : ServerSocketChannel.open();
+
+        try {
+
+            channel.bind(address);
+
+        } catch (IOException e) {
+
+            channel.close();
+
+            throw e;
+
+        }
+
+        SDESServer server = new SDESServer(channel, newExecutor());
+        server.acceptor.start();
+
+        return server;
+
+    }
+
+    /**
+     * @return The address clients connect to, with the chosen port for TCP.
+     */
+    public SocketAddress getAddress() {
+
+        return address;
+
+    }
+
+    /**
+     * Stop accepting, close every connection and remove the socket file of a Unix domain socket.
+     */
+    @Override
+    public void close() throws IOException {
+
+        server.close();
+        executor.shutdownNow();
+
+        if (address instanceof UnixDomainSocketAddress) {
+
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+
+        }
+
+    }
+
+    /**
+     * @return A virtual thread per task executor when the JVM has one, otherwise a cached pool of daemon threads.
+     * The method is looked up by name so the class still compiles and runs on Java 17.
+     */
+    private static ExecutorService newExecutor() {
+
+        try {
+
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+
+        } catch (ReflectiveOperationException e) {
+
+            return Executors.newCachedThreadPool(task -> {
+
+                Thread t = new Thread(task, "sdes-server-connection");
+                t.setDaemon(true);
+
+                return t;
+
+            });
+
+        }
+
+    }
+
+    /**
+     * Accept connections until the server is closed.
+     */
+    private void accept() {
+
+        while (true) {
+
+            SocketChannel channel;
+
+            try {
+
+                channel = server.accept();
+
+            } catch (IOException e) {
+
+                //closed by close(), or the listening socket failed
+                return;
+
+            }
+
+            try {
+
+                executor.execute(() -> serve(channel));
+
+            } catch (RuntimeException e) {
+
+                //the executor was shut down between accept and execute
+                closeQuietly(channel);
+
+                return;
+
+            }
+
+        }
+
+    }
+
+    /**
+     * @param channel A connected client.
+     * Answer requests until the client closes the connection or breaks the protocol.
+     */
+    private static void serve(SocketChannel channel) {
+
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+
+        try (channel) {
+
+            while (channel.read(in) >= 0) {
+
+                in.flip();
+
+                while (in.remaining() >= 4) {
+
+                    int len = in.getInt(in.position());
+
+                    //check for frames that cannot be a request
+                    if (len < HEADER - 4 || len > MAX_FRAME) {
+
+                        return;
+
+                    }
+
+                    if (4 + len <= in.capacity()) {
+
+                        if (in.remaining() < 4 + len) {
+
+                            break;
+
+                        }
+
+                        //a result takes as many bytes as its request, an error message fewer than 256
+                        if (out.remaining() < Math.max(len, RESPONSE_HEADER + 256)) {
+
+                            flush(channel, out);
+
+                        }
+
+                        respond(in, len, out);
+
+                    } else {
+
+                        if (in.remaining() < HEADER) {
+
+                            break;
+
+                        }
+
+                        flush(channel, out);
+                        stream(channel, in, len, out);
+
+                    }
+
+                }
+
+                //everything answered from this read goes out in one write
+                flush(channel, out);
+                in.compact();
+
+            }
+
+        } catch (IOException e) {
+
+            //the client went away, nothing to answer
+        }
+
+    }
+
+    /**
+     * @param in The buffer holding the whole request at its position, which moves past the request.
+     * @param len The request's frame length.
+     * @param out The buffer the response is added to, with room for it.
+     */
+    private static void respond(ByteBuffer in, int len, ByteBuffer out) {
+
+        int start = in.position();
+        int payload = len - (HEADER - 4);
+        byte[] src = in.array();
+        int srcOff = in.arrayOffset() + start + HEADER;
+        String error = check(src[srcOff - 5], ((src[srcOff - 4] & 0xFF) << 8) | (src[srcOff - 3] & 0xFF), src[srcOff - 2]);
+
+        if (error != null) {
+
+            byte[] message = error.getBytes(StandardCharsets.UTF_8);
+            out.putInt(1 + message.length).put(ERROR).put(message);
+
+        } else {
+
+            out.putInt(1 + payload).put(OK);
+            byte[] dst = out.array();
+            int dstOff = out.arrayOffset() + out.position();
+            transform(cipher(src, srcOff - 5), src[srcOff - 5] == ENCRYPT, src, srcOff, payload, dst, dstOff);
+            out.position(out.position() + payload);
+
+        }
+
+        in.position(start + 4 + len);
+
+    }
+
+    /**
+     * @param channel The client.
+     * @param in The buffer holding at least the request header at its position, which moves past the request.
+     * @param len The request's frame length.
+     * @param out The empty response buffer, used to stream the result.
+     * @throws IOException
+     * Answer a request larger than the buffer. The response header goes out first, then each chunk of the payload
+     * as soon as it has been read and transformed.
+     */
+    private static void stream(SocketChannel channel, ByteBuffer in, int len, ByteBuffer out) throws IOException {
+
+        byte op = in.get(in.position() + 4);
+        String error = check(op, in.getShort(in.position() + 5) & 0xFFFF, in.get(in.position() + 7));
+        SDESModeCipher cipher = error == null ? cipher(in.array(), in.arrayOffset() + in.position() + 4) : null;
+        long remaining = len - (HEADER - 4);
+        in.position(in.position() + HEADER);
+
+        if (error == null) {
+
+            out.putInt(len - (HEADER - 4) + 1).put(OK);
+
+        }
+
+        while (remaining > 0) {
+
+            if (!in.hasRemaining()) {
+
+                in.clear();
+
+                if (channel.read(in) < 0) {
+
+                    throw new ClosedChannelException();
+
+                }
+
+                in.flip();
+
+            }
+
+            int n = (int) Math.min(remaining, Math.min(in.remaining(), out.remaining()));
+
+            if (cipher != null) {
+
+                byte[] src = in.array();
+                int srcOff = in.arrayOffset() + in.position();
+                byte[] dst = out.array();
+                int dstOff = out.arrayOffset() + out.position();
+                transform(cipher, op == ENCRYPT, src, srcOff, n, dst, dstOff);
+                cipher = op == ENCRYPT ? cipher.next(src, srcOff, dst, dstOff, n) : cipher.next(dst, dstOff, src, srcOff, n);
+                out.position(out.position() + n);
+                flush(channel, out);
+
+            }
+
+            //an invalid request's payload is read and dropped so the next request can follow
+            in.position(in.position() + n);
+            remaining -= n;
+
+        }
+
+        if (error != null) {
+
+            byte[] message = error.getBytes(StandardCharsets.UTF_8);
+            out.putInt(1 + message.length).put(ERROR).put(message);
+
+        }
+
+    }
+
+    /**
+     * @param op The op byte.
+     * @param key The key.
+     * @param mode The mode byte.
+     * @return Why the request cannot be served, or null if it can.
+     */
+    private static String check(byte op, int key, byte mode) {
+
+        if (op != ENCRYPT && op != DECRYPT) {
+
+            return "Unknown op (" + op + "), expected 1 (encrypt) or 2 (decrypt)";
+
+        }
+
+        if (key > 0x3FF) {
+
+            return "Key (" + key + ") is out of bounds (0-1023)";
+
+        }
+
+        if (mode < 0 || mode >= MODES.length) {
+
+            return "Unknown mode (" + mode + "), expected 0-" + (MODES.length - 1);
+
+        }
+
+        return null;
+
+    }
+
+    /**
+     * @param header The array holding a checked request.
+     * @param opOff The index of the op byte.
+     * @return The cipher for the request's key, mode and iv, with the key from the shared cache.
+     */
+    private static SDESModeCipher cipher(byte[] header, int opOff) {
+
+        int key = ((header[opOff + 1] & 0xFF) << 8) | (header[opOff + 2] & 0xFF);
+
+        return new SDESModeCipher(SDESKeyCache.shared().get(key), MODES[header[opOff + 3]], header[opOff + 4]);
+
+    }
+
+    /**
+     * @param cipher The request's cipher.
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param src The payload.
+     * @param srcOff The index of the first payload byte.
+     * @param len The number of bytes.
+     * @param dst The array the result is written to.
+     * @param dstOff The index in dst of the first result byte.
+     * ECB goes through the default engine in one bulk call, the other modes through the mode cipher.
+     */
+    private static void transform(SDESModeCipher cipher, boolean encrypt, byte[] src, int srcOff, int len, byte[] dst, int dstOff) {
+
+        if (cipher.getMode() == SDESMode.ECB) {
+
+            SDESEngine engine = SDESEngines.defaultEngine();
+
+            if (encrypt) {
+
+                engine.encrypt(cipher.getKey(), src, srcOff, len, dst, dstOff);
+
+            } else {
+
+                engine.decrypt(cipher.getKey(), src, srcOff, len, dst, dstOff);
+
+            }
+
+        } else if (encrypt) {
+
+            cipher.encrypt(src, srcOff, len, dst, dstOff);
+
+        } else {
+
+            cipher.decrypt(src, srcOff, len, dst, dstOff);
+
+        }
+
+    }
+
+    /**
+     * @param channel The client.
+     * @param out The responses to send, cleared afterwards.
+     * @throws IOException
+     */
+    private static void flush(SocketChannel channel, ByteBuffer out) throws IOException {
+
+        out.flip();
+
+        while (out.hasRemaining()) {
+
+            channel.write(out);
+
+        }
+
+        out.clear();
+
+    }
+
+    /**
+     * @param channel A channel to close, errors are ignored.
+     */
+    private static void closeQuietly(SocketChannel channel) {
+
+        try {
+
+            channel.close();
+
+        } catch (IOException e) {
+
+            //nothing more can be done with it
+        }
+
+    }
+
+}
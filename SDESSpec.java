@@ -0,0 +1,482 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * The tables that define an SDES variant: the IP, IP inverse, EP and P4 permutations, the two subkey selections
+ * and the S0/S1 S-boxes. STANDARD is the textbook cipher; other variants, for teaching or for test vectors, can be
+ * loaded from a properties file such as
+ * <pre>
+ * ip = 1,5,2,0,3,7,4,6
+ * s0 = 1,3,0,2,3,1,2,0,0,3,2,1,1,3,3,2
+ * </pre>
+ * where every entry left out keeps its standard value, so a variant changing ip has to give the matching ipInverse
+ * too. The vectors use the same indices as SDES.expPerm, and an S-box lists its 2-bit output for each 4-bit input
+ * 0000..1111. Every spec is compiled into lookup tables, so a variant runs through the same branch-free round
+ * function as the standard cipher.
+ */
+public final class SDESSpec {
+
+    public static final SDESSpec STANDARD = new SDESSpec(SDESBits.IP, SDESBits.IP_INVERSE, SDESBits.EP, SDESBits.P4, SDESBits.EPV1, SDESBits.EPV2, SDESBits.S0, SDESBits.S1);
+
+    private static final int[] P10 = {2, 4, 1, 6, 3, 9, 0, 8, 7, 5}; // the textbook P10 the subkey selections start from
+    private static final int[] P8 = {5, 2, 6, 3, 7, 4, 9, 8}; // the textbook P8 the subkey selections end with
+    private static final SDESBits.Permutation[] SCHEDULE = schedule(); // P8 after both P10 halves are rotated left 0-4 times
+
+    private final SDESBits.Permutation ip;
+    private final SDESBits.Permutation ipInverse;
+    private final SDESBits.Permutation ep;
+    private final SDESBits.Permutation p4;
+    private final SDESBits.Permutation k1;
+    private final SDESBits.Permutation k2;
+    private final boolean textbookSchedule; // true if k1 and k2 are the textbook selections, so later rounds exist
+    private final int[] s0; // S0 output for each 4-bit input
+    private final int[] s1; // S1 output for each 4-bit input
+
+    /**
+     * @param ip The initial permutation, 8 bits to 8 bits.
+     * @param ipInverse The final permutation, 8 bits to 8 bits.
+     * @param ep The expansion/permutation of the right half, 4 bits to 8 bits.
+     * @param p4 The permutation of the S-box outputs, 4 bits to 4 bits.
+     * @param k1 The selection of subkey k1 from the key, 10 bits to 8 bits.
+     * @param k2 The selection of subkey k2 from the key, 10 bits to 8 bits.
+     * @param s0 The 16 outputs of S0, each 0..3.
+     * @param s1 The 16 outputs of S1, each 0..3.
+     * @throws IllegalArgumentException
+     */
+    public SDESSpec(SDESBits.Permutation ip, SDESBits.Permutation ipInverse, SDESBits.Permutation ep, SDESBits.Permutation p4,
+            SDESBits.Permutation k1, SDESBits.Permutation k2, int[] s0, int[] s1) throws IllegalArgumentException {
+
+        checkWidths("ip", ip, 8, 8);
+        checkWidths("ipInverse", ipInverse, 8, 8);
+        checkWidths("ep", ep, 4, 8);
+        checkWidths("p4", p4, 4, 4);
+        checkWidths("k1", k1, 10, 8);
+        checkWidths("k2", k2, 10, 8);
+
+        //IP and IP inverse have to be true permutations that undo each other or the cipher is not invertible
+        checkBijective("ip", ip);
+        checkBijective("ipInverse", ipInverse);
+        checkInverse(ip, ipInverse);
+
+        this.ip = ip;
+        this.ipInverse = ipInverse;
+        this.ep = ep;
+        this.p4 = p4;
+        this.k1 = k1;
+        this.k2 = k2;
+        this.textbookSchedule = Arrays.equals(k1.getVector(), SDESBits.EPV1.getVector()) && Arrays.equals(k2.getVector(), SDESBits.EPV2.getVector());
+        this.s0 = checkSBox("s0", s0);
+        this.s1 = checkSBox("s1", s1);
+
+    }
+
+    /**
+     * @param props The variant's vectors, keyed ip, ipInverse, ep, p4, k1, k2, s0 and s1.
+     * @return The compiled spec; entries that are missing keep their standard value.
+     * @throws IllegalArgumentException
+     */
+    public static SDESSpec fromProperties(Properties props) throws IllegalArgumentException {
+
+        return new SDESSpec(
+                permutation(props, "ip", SDES.IP_PERM, 8),
+                permutation(props, "ipInverse", SDES.IP_INVERSE_PERM, 8),
+                permutation(props, "ep", SDES.EP_PERM, 4),
+                permutation(props, "p4", SDES.P4_SELECT, 4),
+                permutation(props, "k1", SDES.EPV1, 10),
+                permutation(props, "k2", SDES.EPV2, 10),
+                vector(props, "s0", SDESBits.S0),
+                vector(props, "s1", SDESBits.S1));
+
+    }
+
+    /**
+     * @param reader A properties file, as described in the class comment.
+     * @return The compiled spec.
+     * @throws IOException
+     * @throws IllegalArgumentException
+     */
+    public static SDESSpec load(Reader reader) throws IOException, IllegalArgumentException {
+
+        Properties props = new Properties();
+        props.load(reader);
+
+        return fromProperties(props);
+
+    }
+
+    /**
+     * @return The initial permutation.
+     */
+    public SDESBits.Permutation getIp() {
+
+        return ip;
+
+    }
+
+    /**
+     * @return The final permutation.
+     */
+    public SDESBits.Permutation getIpInverse() {
+
+        return ipInverse;
+
+    }
+
+    /**
+     * @return The expansion/permutation of the right half.
+     */
+    public SDESBits.Permutation getEp() {
+
+        return ep;
+
+    }
+
+    /**
+     * @return The permutation of the S-box outputs.
+     */
+    public SDESBits.Permutation getP4() {
+
+        return p4;
+
+    }
+
+    /**
+     * @return A copy of the 16 outputs of S0.
+     */
+    public int[] getS0() {
+
+        return s0.clone();
+
+    }
+
+    /**
+     * @return A copy of the 16 outputs of S1.
+     */
+    public int[] getS1() {
+
+        return s1.clone();
+
+    }
+
+    /**
+     * @param key The packed 10-bit key.
+     * @return The packed k1 subkey.
+     */
+    public int key1(int key) {
+
+        return k1.apply(key);
+
+    }
+
+    /**
+     * @param key The packed 10-bit key.
+     * @return The packed k2 subkey.
+     */
+    public int key2(int key) {
+
+        return k2.apply(key);
+
+    }
+
+    /**
+     * @param key The packed 10-bit key.
+     * @param round The round, counted from 0.
+     * @return The packed subkey of the round. Rounds 0 and 1 use k1 and k2; later rounds carry on the textbook
+     * schedule, rotating both P10 halves two more places per round before P8, so round 2 rotates them 5 (that is
+     * 0) places, round 3 2 places, and so on.
+     * @throws IllegalArgumentException If the round is past the second and the spec has its own k1 or k2, which
+     * cannot be continued without mixing two key schedules.
+     */
+    public int subkey(int key, int round) throws IllegalArgumentException {
+
+        //check for later rounds of a schedule that is not the textbook one
+        if (round >= 2 && !textbookSchedule) {
+
+            throw SDESMetrics.error(new IllegalArgumentException("Round (" + round + ") needs the textbook key schedule, this spec has its own k1 and k2 selections"));
+
+        }
+
+        return round == 0 ? k1.apply(key) : round == 1 ? k2.apply(key) : SCHEDULE[(2 * round + 1) % 5].apply(key);
+
+    }
+
+    /**
+     * @param a A packed 4-bit S0 input.
+     * @return The packed 2-bit S0 output.
+     */
+    public int s0(int a) {
+
+        return s0[a];
+
+    }
+
+    /**
+     * @param b A packed 4-bit S1 input.
+     * @return The packed 2-bit S1 output.
+     */
+    public int s1(int b) {
+
+        return s1[b];
+
+    }
+
+    /**
+     * @param k A packed 8-bit subkey.
+     * @param x A packed 4-bit right half.
+     * @return The packed 4-bit output of the feistel function, P4(S0 || S1) of EP(x) xor k.
+     */
+    public int feistel(int k, int x) {
+
+        int a = ep.apply(x) ^ k;
+
+        return p4.apply((s0[a >>> 4] << 2) | s1[a & 0xF]);
+
+    }
+
+    /**
+     * @param x A packed 8-bit block.
+     * @param k A packed 8-bit subkey.
+     * @return The packed 8-bit result of fk, (L(x) xor F(R(x), k)) || R(x).
+     */
+    public int f(int x, int k) {
+
+        return ((x >>> 4) ^ feistel(k, x & 0xF)) << 4 | (x & 0xF);
+
+    }
+
+    /**
+     * @param block A packed 8-bit block.
+     * @param key1 The packed k1 subkey.
+     * @param key2 The packed k2 subkey.
+     * @return The packed block after IP, fk1, the swap, fk2 and IP inverse.
+     */
+    public int rounds(int block, int key1, int key2) {
+
+        int fk1 = f(ip.apply(block), key1);
+
+        return ipInverse.apply(f(((fk1 & 0xF) << 4) | (fk1 >>> 4), key2));
+
+    }
+
+    /**
+     * @param block A packed 8-bit block.
+     * @param subkeys The packed subkey of every round, in the order they are applied.
+     * @return The packed block after IP, one fk per subkey with a swap between consecutive rounds, and IP inverse.
+     * With the subkeys in reverse order this decrypts, as two rounds do with k2 and k1.
+     */
+    public int rounds(int block, int[] subkeys) {
+
+        int x = f(ip.apply(block), subkeys[0]);
+
+        for (int r = 1; r < subkeys.length; r++) {
+
+            x = f(((x & 0xF) << 4) | (x >>> 4), subkeys[r]);
+
+        }
+
+        return ipInverse.apply(x);
+
+    }
+
+    /**
+     * @param b A single byte of plain text.
+     * @param subkeys The packed subkey of every round.
+     * @return The byte encrypted with one round per subkey.
+     */
+    public byte encryptByte(byte b, int[] subkeys) {
+
+        return (byte) reverse(rounds(reverse(b & 0xFF), subkeys));
+
+    }
+
+    /**
+     * @param b A single byte of plain text.
+     * @param key1 The packed k1 subkey.
+     * @param key2 The packed k2 subkey.
+     * @return The encrypted byte.
+     * SDES stores byte bit i at bit array index i, so the block is the byte with its bit order reversed.
+     */
+    public byte encryptByte(byte b, int key1, int key2) {
+
+        return (byte) reverse(rounds(reverse(b & 0xFF), key1, key2));
+
+    }
+
+    /**
+     * @return The subkey selection for every rotation of the P10 halves.
+     */
+    private static SDESBits.Permutation[] schedule() {
+
+        SDESBits.Permutation[] result = new SDESBits.Permutation[5];
+
+        for (int shift = 0; shift < 5; shift++) {
+
+            int[] vector = new int[8];
+
+            for (int i = 0; i < 8; i++) {
+
+                int j = P8[i]; // the bit of the rotated P10 output that P8 selects
+                vector[i] = P10[(j < 5 ? 0 : 5) + (j + shift) % 5];
+
+            }
+
+            result[shift] = new SDESBits.Permutation(vector, 10);
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * @param b A packed 8-bit value.
+     * @return b with its 8 bits in reverse order.
+     */
+    private static int reverse(int b) {
+
+        return Integer.reverse(b) >>> 24;
+
+    }
+
+    /**
+     * @param name The name of the vector, for the error message.
+     * @param p The compiled vector.
+     * @param inputWidth The required number of input bits.
+     * @param outputWidth The required number of output bits.
+     * @throws IllegalArgumentException
+     */
+    private static void checkWidths(String name, SDESBits.Permutation p, int inputWidth, int outputWidth) throws IllegalArgumentException {
+
+        if (p.getInputWidth() != inputWidth || p.getOutputWidth() != outputWidth) {
+
+            throw new IllegalArgumentException(name + " must map " + inputWidth + " bits to " + outputWidth + " bits (it maps " + p.getInputWidth() + " bits to " + p.getOutputWidth() + " bits)");
+
+        }
+
+    }
+
+    /**
+     * @param name The name of the vector, for the error message.
+     * @param p A compiled 8-bit to 8-bit vector.
+     * @throws IllegalArgumentException
+     */
+    private static void checkBijective(String name, SDESBits.Permutation p) throws IllegalArgumentException {
+
+        boolean[] seen = new boolean[256];
+
+        for (int i = 0; i < 256; i++) {
+
+            if (seen[p.apply(i)]) {
+
+                throw new IllegalArgumentException(name + " is not a permutation, it selects some bit more than once");
+
+            }
+
+            seen[p.apply(i)] = true;
+
+        }
+
+    }
+
+    /**
+     * @param ip The initial permutation.
+     * @param ipInverse The final permutation.
+     * @throws IllegalArgumentException
+     */
+    private static void checkInverse(SDESBits.Permutation ip, SDESBits.Permutation ipInverse) throws IllegalArgumentException {
+
+        for (int i = 0; i < 256; i++) {
+
+            if (ipInverse.apply(ip.apply(i)) != i) {
+
+                throw new IllegalArgumentException("ipInverse is not the inverse of ip (ipInverse(ip(" + i + ")) = " + ipInverse.apply(ip.apply(i)) + ")");
+
+            }
+
+        }
+
+    }
+
+    /**
+     * @param name The name of the S-box, for the error message.
+     * @param sBox The 16 outputs of the S-box.
+     * @return A copy of sBox.
+     * @throws IllegalArgumentException
+     */
+    private static int[] checkSBox(String name, int[] sBox) throws IllegalArgumentException {
+
+        if (sBox.length != 16) {
+
+            throw new IllegalArgumentException(name + " must have 16 entries (Size of " + name + ": " + sBox.length + ")");
+
+        }
+
+        for (int i = 0; i < 16; i++) {
+
+            if (sBox[i] < 0 || sBox[i] > 3) {
+
+                throw new IllegalArgumentException("Value at index (" + i + ") of " + name + " (" + name + "[" + i + "] = " + sBox[i] + ") is out of bounds (0-3)");
+
+            }
+
+        }
+
+        return sBox.clone();
+
+    }
+
+    /**
+     * @param props The properties to read from.
+     * @param name The property name.
+     * @param standard The vector to use when the property is missing.
+     * @param inputWidth The number of bits the vector selects from.
+     * @return The compiled vector.
+     * @throws IllegalArgumentException
+     */
+    private static SDESBits.Permutation permutation(Properties props, String name, int[] standard, int inputWidth) throws IllegalArgumentException {
+
+        return new SDESBits.Permutation(vector(props, name, standard), inputWidth);
+
+    }
+
+    /**
+     * @param props The properties to read from.
+     * @param name The property name.
+     * @param standard The vector to use when the property is missing.
+     * @return The comma separated integers of the property, or standard.
+     * @throws IllegalArgumentException
+     */
+    private static int[] vector(Properties props, String name, int[] standard) throws IllegalArgumentException {
+
+        String value = props.getProperty(name);
+
+        if (value == null) {
+
+            return standard;
+
+        }
+
+        String[] parts = value.split(",");
+        int[] result = new int[parts.length];
+
+        for (int i = 0; i < parts.length; i++) {
+
+            try {
+
+                result[i] = Integer.parseInt(parts[i].trim());
+
+            } catch (NumberFormatException e) {
+
+                throw new IllegalArgumentException("Value at index (" + i + ") of " + name + " is not a number ('" + parts[i].trim() + "')", e);
+
+            }
+
+        }
+
+        return result;
+
+    }
+
+}
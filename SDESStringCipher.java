@@ -0,0 +1,255 @@
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Objects;
+
+/**
+ * Encrypts strings to bytes and decrypts bytes to strings with an explicit charset, for encrypting many short values
+ * such as database columns. The encoder, the decoder and their buffers are kept between calls and only grow, so once
+ * they are large enough for the longest value, a call that writes into the caller's array or builder allocates
+ * nothing. Like the charset coders it holds, an instance is not thread safe; give each thread its own.
+ *
+ * Unmappable and malformed input is replaced, as String.getBytes(Charset) and new String(byte[], Charset) do, unless
+ * the instance is created as strict, in which case it is reported as CharacterCodingException.
+ */
+public final class SDESStringCipher {
+
+    private final SDESKey key;
+    private final CharsetEncoder encoder;
+    private final CharsetDecoder decoder;
+    private char[] chars = new char[64]; // the chars being encoded or the chars decoded
+    private byte[] bytes = new byte[64]; // the bytes encoded or the bytes being decoded
+    private CharBuffer charBuffer = CharBuffer.wrap(chars);
+    private ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+
+    /**
+     * @param key The key to encrypt and decrypt with.
+     * @param charset The charset strings are converted with, such as UTF-8.
+     */
+    public SDESStringCipher(SDESKey key, Charset charset) {
+
+        this(key, charset, false);
+
+    }
+
+    /**
+     * @param key The key to encrypt and decrypt with.
+     * @param charset The charset strings are converted with, such as UTF-8.
+     * @param strict True to report unmappable and malformed input, false to replace it.
+     */
+    public SDESStringCipher(SDESKey key, Charset charset, boolean strict) {
+
+        CodingErrorAction action = strict ? CodingErrorAction.REPORT : CodingErrorAction.REPLACE;
+
+        this.key = Objects.requireNonNull(key, "key");
+        this.encoder = charset.newEncoder().onMalformedInput(action).onUnmappableCharacter(action);
+        this.decoder = charset.newDecoder().onMalformedInput(action).onUnmappableCharacter(action);
+
+    }
+
+    /**
+     * @return The key this cipher encrypts with.
+     */
+    public SDESKey getKey() {
+
+        return key;
+
+    }
+
+    /**
+     * @return The charset strings are converted with.
+     */
+    public Charset getCharset() {
+
+        return encoder.charset();
+
+    }
+
+    /**
+     * @param msg The message to encrypt.
+     * @return A new array holding the cipher text of the encoded message.
+     * @throws CharacterCodingException If the cipher is strict and msg cannot be encoded.
+     */
+    public byte[] encrypt(CharSequence msg) throws CharacterCodingException {
+
+        int n = encode(msg);
+        byte[] result = new byte[n];
+        key.encrypt(bytes, 0, n, result, 0);
+
+        return result;
+
+    }
+
+    /**
+     * @param msg The message to encrypt.
+     * @param dst The array the cipher text is written to.
+     * @param dstOff The index in dst of the first cipher text byte.
+     * @return The number of bytes written.
+     * @throws CharacterCodingException If the cipher is strict and msg cannot be encoded.
+     * @throws IndexOutOfBoundsException If dst has no room for the cipher text, nothing is written then.
+     */
+    public int encrypt(CharSequence msg, byte[] dst, int dstOff) throws CharacterCodingException, IndexOutOfBoundsException {
+
+        int n = encode(msg);
+        key.encrypt(bytes, 0, n, dst, dstOff);
+
+        return n;
+
+    }
+
+    /**
+     * @param cipher The cipher text bytes.
+     * @return The decoded plain text.
+     * @throws CharacterCodingException If the cipher is strict and the plain text cannot be decoded.
+     */
+    public String decrypt(byte[] cipher) throws CharacterCodingException {
+
+        return decrypt(cipher, 0, cipher.length);
+
+    }
+
+    /**
+     * @param src The cipher text bytes.
+     * @param off The index of the first byte.
+     * @param len The number of bytes.
+     * @return The decoded plain text.
+     * @throws CharacterCodingException If the cipher is strict and the plain text cannot be decoded.
+     * @throws IndexOutOfBoundsException
+     */
+    public String decrypt(byte[] src, int off, int len) throws CharacterCodingException, IndexOutOfBoundsException {
+
+        int n = decode(src, off, len);
+
+        return new String(chars, 0, n);
+
+    }
+
+    /**
+     * @param src The cipher text bytes.
+     * @param off The index of the first byte.
+     * @param len The number of bytes.
+     * @param out The builder the decoded plain text is appended to.
+     * @return The number of chars appended.
+     * @throws CharacterCodingException If the cipher is strict and the plain text cannot be decoded.
+     * @throws IndexOutOfBoundsException
+     */
+    public int decrypt(byte[] src, int off, int len, StringBuilder out) throws CharacterCodingException, IndexOutOfBoundsException {
+
+        int n = decode(src, off, len);
+        out.append(chars, 0, n);
+
+        return n;
+
+    }
+
+    /**
+     * @param msg The message to encode.
+     * @return The number of bytes encoded into the start of bytes.
+     * @throws CharacterCodingException
+     */
+    private int encode(CharSequence msg) throws CharacterCodingException {
+
+        int len = msg.length();
+
+        if (chars.length < len) {
+
+            chars = new char[Math.max(len, 2 * chars.length)];
+            charBuffer = CharBuffer.wrap(chars);
+
+        }
+
+        //copy the chars into the reusable array, a String does this in one bulk copy
+        if (msg instanceof String) {
+
+            ((String) msg).getChars(0, len, chars, 0);
+
+        } else {
+
+            for (int i = 0; i < len; i++) {
+
+                chars[i] = msg.charAt(i);
+
+            }
+
+        }
+
+        ensureBytes((int) Math.ceil(len * (double) encoder.maxBytesPerChar()));
+        charBuffer.clear().limit(len);
+        byteBuffer.clear();
+        encoder.reset();
+        check(encoder.encode(charBuffer, byteBuffer, true));
+        check(encoder.flush(byteBuffer));
+
+        return byteBuffer.position();
+
+    }
+
+    /**
+     * @param src The cipher text bytes.
+     * @param off The index of the first byte.
+     * @param len The number of bytes.
+     * @return The number of chars decoded into the start of chars.
+     * @throws CharacterCodingException
+     * @throws IndexOutOfBoundsException
+     */
+    private int decode(byte[] src, int off, int len) throws CharacterCodingException, IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(off, len, src.length);
+        ensureBytes(len);
+        key.decrypt(src, off, len, bytes, 0);
+
+        int capacity = (int) Math.ceil(len * (double) decoder.maxCharsPerByte());
+
+        if (chars.length < capacity) {
+
+            chars = new char[Math.max(capacity, 2 * chars.length)];
+            charBuffer = CharBuffer.wrap(chars);
+
+        }
+
+        byteBuffer.clear().limit(len);
+        charBuffer.clear();
+        decoder.reset();
+        check(decoder.decode(byteBuffer, charBuffer, true));
+        check(decoder.flush(charBuffer));
+
+        return charBuffer.position();
+
+    }
+
+    /**
+     * @param capacity The number of bytes needed.
+     * Grow the byte array and its buffer if they are smaller.
+     */
+    private void ensureBytes(int capacity) {
+
+        if (bytes.length < capacity) {
+
+            bytes = new byte[Math.max(capacity, 2 * bytes.length)];
+            byteBuffer = ByteBuffer.wrap(bytes);
+
+        }
+
+    }
+
+    /**
+     * @param result The result of an encode, decode or flush.
+     * @throws CharacterCodingException If it is an error, which only a strict coder reports.
+     * The output buffers are sized for the worst case, so overflow cannot happen.
+     */
+    private static void check(CoderResult result) throws CharacterCodingException {
+
+        if (result.isError()) {
+
+            result.throwException();
+
+        }
+
+    }
+
+}
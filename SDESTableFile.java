@@ -0,0 +1,190 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+import java.util.stream.IntStream;
+
+/**
+ * The encrypt and decrypt tables of all 1024 standard SDES keys, precomputed into one file so a short-lived process
+ * never runs a byte through the rounds. Loading maps the file and reads only its header; taking a key copies its
+ * 512 bytes out of the mapping, so the first encryption costs a page touch instead of 256 passes through the round
+ * function before the JIT has compiled it.
+ *
+ * The file is big-endian: the magic "SDES", the format version, the number of keys (1024) and the CRC32C of the
+ * tables, followed for every key in order by its 256-byte encrypt table and its 256-byte decrypt table. Loading
+ * does not check the tables; verify does, against the checksum and against the round function.
+ */
+public final class SDESTableFile {
+
+    public static final int VERSION = 1;
+    public static final long SIZE = 16 + 1024L * 512; // the length of a table file in bytes
+
+    private static final int MAGIC = 0x53444553; // "SDES"
+    private static final int HEADER = 16; // magic, version, key count and checksum
+    private static final int ENTRY = 512; // a key's encrypt and decrypt tables
+
+    private final Path path;
+    private final ByteBuffer tables; // the mapped tables, after the header
+    private final int checksum;
+
+    /**
+     * @param path The file the tables were loaded from.
+     * @param tables The mapped tables.
+     * @param checksum The checksum stored in the header.
+     */
+    private SDESTableFile(Path path, ByteBuffer tables, int checksum) {
+
+        this.path = path;
+        this.tables = tables;
+        this.checksum = checksum;
+
+    }
+
+    /**
+     * @param path The file to create or replace.
+     * @throws IOException
+     * Compute the tables of every key, in parallel, and write them to path. The file is written next to path under
+     * a temporary name and then moved over it, so a process loading path never sees a partial file.
+     */
+    public static void write(Path path) throws IOException {
+
+        byte[] file = new byte[(int) SIZE];
+
+        IntStream.range(0, 1024).parallel().forEach(k -> {
+
+            SDESKey key = SDESKey.of(k);
+            System.arraycopy(key.table(true), 0, file, HEADER + k * ENTRY, 256);
+            System.arraycopy(key.table(false), 0, file, HEADER + k * ENTRY + 256, 256);
+
+        });
+
+        CRC32C crc = new CRC32C();
+        crc.update(file, HEADER, file.length - HEADER);
+        ByteBuffer.wrap(file).putInt(MAGIC).putInt(VERSION).putInt(1024).putInt((int) crc.getValue());
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try {
+
+            Files.write(tmp, file);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } finally {
+
+            Files.deleteIfExists(tmp);
+
+        }
+
+    }
+
+    /**
+     * @param path A file written by write.
+     * @return The mapped tables.
+     * @throws IOException If the file cannot be read, or it is not a table file of this version.
+     */
+    public static SDESTableFile load(Path path) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            //check for files of the wrong length before mapping them
+            if (channel.size() != SIZE) {
+
+                throw new IOException("Not an SDES table file: " + path + " (" + channel.size() + " bytes, expected " + SIZE + ")");
+
+            }
+
+            //the mapping stays valid after the channel is closed
+            ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, SIZE);
+
+            if (file.getInt(0) != MAGIC || file.getInt(8) != 1024) {
+
+                throw new IOException("Not an SDES table file: " + path);
+
+            }
+
+            if (file.getInt(4) != VERSION) {
+
+                throw new IOException("Unsupported SDES table file version (" + file.getInt(4) + ") in " + path + ", expected " + VERSION);
+
+            }
+
+            return new SDESTableFile(path, file.position(HEADER).slice(), file.getInt(12));
+
+        }
+
+    }
+
+    /**
+     * @param key The key as an int, bit 9 is the leftmost key bit.
+     * @return A new key holding a copy of its tables from the file.
+     * @throws IllegalArgumentException
+     */
+    public SDESKey key(int key) throws IllegalArgumentException {
+
+        //check for values that do not fit in 10 bits
+        if (key < 0 || key > 0x3FF) {
+
+            throw SDESMetrics.error(new IllegalArgumentException("Key (" + key + ") is out of bounds (0-1023)"));
+
+        }
+
+        return new SDESKey(key, tables, key * ENTRY);
+
+    }
+
+    /**
+     * @return The CRC32C of the tables, as stored in the header.
+     */
+    public int getChecksum() {
+
+        return checksum;
+
+    }
+
+    /**
+     * @throws IOException If the tables do not match the stored checksum or the tables the round function computes.
+     * Check every byte of the file. This reads the whole file and expands all 1024 keys, so it belongs where the file
+     * is written or installed, not in every process that loads it.
+     */
+    public void verify() throws IOException {
+
+        CRC32C crc = new CRC32C();
+        crc.update(tables.duplicate());
+
+        if ((int) crc.getValue() != checksum) {
+
+            throw new IOException("SDES table file " + path + " is corrupt (checksum " + Integer.toHexString((int) crc.getValue()) + ", expected " + Integer.toHexString(checksum) + ")");
+
+        }
+
+        int mismatch = IntStream.range(0, 1024).parallel()
+                .filter(k -> !matches(k))
+                .findFirst()
+                .orElse(-1);
+
+        if (mismatch >= 0) {
+
+            throw new IOException("SDES table file " + path + " does not match the SDES rounds for key " + SDESCodec.toBits(SDESBits.toBits(mismatch, 10)));
+
+        }
+
+    }
+
+    /**
+     * @param k The key as an int.
+     * @return True if the key's tables in the file are the ones the round function computes.
+     */
+    private boolean matches(int k) {
+
+        SDESKey key = SDESKey.of(k);
+
+        return tables.slice(k * ENTRY, 256).equals(ByteBuffer.wrap(key.table(true)))
+                && tables.slice(k * ENTRY + 256, 256).equals(ByteBuffer.wrap(key.table(false)));
+
+    }
+
+}
@@ -0,0 +1,590 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The non-interactive command line tool. Driver.main hands its arguments here when it is given any:
+ *
+ *     sdes encrypt|decrypt [options] [input [output]]
+ *     sdes tables file
+ *
+ * Input and output default to stdin and stdout, "-" names them explicitly. The key comes from --key, --key-file or
+ * --key-env, or from the SDES_KEY environment variable when none is given. The format applies to the cipher text, so
+ * encrypt writes it and decrypt reads it. Buffered I/O streams large blocks through the cipher; mapped I/O maps both
+ * files into memory and needs real files and raw format. The tables command writes the precomputed tables of every
+ * key to an SDESTableFile and verifies it; --tables then takes the key from that file instead of expanding it.
+ */
+public final class SDESTool {
+
+    public static final String KEY_ENV = "SDES_KEY";
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "usage: sdes encrypt|decrypt [options] [input [output]]",
+            "       sdes tables FILE",
+            "  -k, --key BITS        the 10-bit key, such as 1010000010",
+            "      --key-file PATH   read the key from a file",
+            "      --key-env NAME    read the key from an environment variable (default " + KEY_ENV + ")",
+            "  -f, --format FORMAT   cipher text format: raw, hex or base64 (default raw)",
+            "      --io MODE         buffered or mapped (default buffered)",
+            "  -t, --threads N       transform on N threads (default 1)",
+            "      --spec PATH       a properties file describing an SDES variant",
+            "      --tables PATH     take the key from a table file written by sdes tables",
+            "  -h, --help            print this message",
+            "input and output default to stdin and stdout, - names them explicitly");
+
+    private SDESTool() {
+
+    }
+
+    /**
+     * @param args The command line.
+     * Run the tool and exit with its status.
+     */
+    public static void main(String[] args) {
+
+        System.exit(run(args, System.in, System.out, System.err));
+
+    }
+
+    /**
+     * @param args The command line.
+     * @param stdin The stream read when no input file is given.
+     * @param stdout The stream written when no output file is given.
+     * @param stderr The stream errors and the usage are printed to.
+     * @return The exit status: 0 on success, 1 if the transform failed, 2 for an invalid command line.
+     */
+    public static int run(String[] args, InputStream stdin, OutputStream stdout, PrintStream stderr) {
+
+        Options options;
+
+        try {
+
+            options = Options.parse(args);
+
+        } catch (IllegalArgumentException e) {
+
+            stderr.println("sdes: " + e.getMessage());
+            stderr.println(USAGE);
+
+            return 2;
+
+        }
+
+        if (options.help) {
+
+            stderr.println(USAGE);
+
+            return 0;
+
+        }
+
+        ForkJoinPool pool = options.threads > 1 ? new ForkJoinPool(options.threads) : null;
+
+        try {
+
+            if (options.writeTables) {
+
+                Path path = Paths.get(options.input);
+                SDESTableFile.write(path);
+                SDESTableFile.load(path).verify();
+
+                return 0;
+
+            }
+
+            SDESSpec spec = SDESSpec.STANDARD;
+
+            if (options.spec != null) {
+
+                try (Reader reader = Files.newBufferedReader(Paths.get(options.spec), StandardCharsets.UTF_8)) {
+
+                    spec = SDESSpec.load(reader);
+
+                }
+
+            }
+
+            SDESKey key = options.tables != null ? SDESTableFile.load(Paths.get(options.tables)).key(SDESKey.parseInt(readKey(options))) : SDESKey.parse(readKey(options), spec);
+            SDESParallel parallel = pool != null ? new SDESParallel(pool, SDESParallel.DEFAULT_THRESHOLD) : null;
+
+            if (options.mapped) {
+
+                SDESFiles.transform(Paths.get(options.input), Paths.get(options.output), key, options.encrypt, SDESFiles.DEFAULT_REGION_SIZE, parallel, null);
+
+            } else {
+
+                InputStream in = options.input.equals("-") ? stdin : Files.newInputStream(Paths.get(options.input));
+
+                try {
+
+                    OutputStream out = options.output.equals("-") ? stdout : Files.newOutputStream(Paths.get(options.output));
+
+                    try {
+
+                        stream(in, out, key, options.encrypt, options.format, parallel);
+
+                    } finally {
+
+                        if (out != stdout) {
+
+                            out.close();
+
+                        }
+
+                    }
+
+                } finally {
+
+                    if (in != stdin) {
+
+                        in.close();
+
+                    }
+
+                }
+
+            }
+
+            return 0;
+
+        } catch (IOException | IllegalArgumentException e) {
+
+            stderr.println("sdes: " + e.getMessage());
+
+            return 1;
+
+        } finally {
+
+            if (pool != null) {
+
+                pool.shutdown();
+
+            }
+
+        }
+
+    }
+
+    /**
+     * @param options The parsed command line.
+     * @return The key's bit string, with surrounding white space removed.
+     * @throws IOException
+     * @throws IllegalArgumentException If the key source is missing.
+     */
+    private static String readKey(Options options) throws IOException, IllegalArgumentException {
+
+        if (options.key != null) {
+
+            return options.key.trim();
+
+        }
+
+        if (options.keyFile != null) {
+
+            return new String(Files.readAllBytes(Paths.get(options.keyFile)), StandardCharsets.US_ASCII).trim();
+
+        }
+
+        String name = options.keyEnv != null ? options.keyEnv : KEY_ENV;
+        String value = System.getenv(name);
+
+        if (value == null) {
+
+            throw new IllegalArgumentException("No key given and the environment variable " + name + " is not set");
+
+        }
+
+        return value.trim();
+
+    }
+
+    /**
+     * @param in The stream to read until end of stream.
+     * @param out The stream to write the result to.
+     * @param key The key to transform with.
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param format raw, hex or base64, the format of the cipher text side.
+     * @param parallel Splits each block over its threads, or null to transform on the calling thread.
+     * @throws IOException
+     * @throws IllegalArgumentException If hex or base64 input is malformed.
+     * Read, transform and write one large block at a time. The block is filled completely before it is transformed,
+     * so a pipe delivering small pieces still reaches the threads in large ranges.
+     */
+    private static void stream(InputStream in, OutputStream out, SDESKey key, boolean encrypt, String format, SDESParallel parallel) throws IOException, IllegalArgumentException {
+
+        int size = parallel != null ? Math.max(BUFFER_SIZE, 4 * parallel.getThreshold()) : BUFFER_SIZE;
+
+        if (!encrypt && !format.equals("raw")) {
+
+            decodeStream(in, out, key, format.equals("hex") ? 2 : 4, size, parallel);
+
+            return;
+
+        }
+
+        //whole base64 groups per block, so only the last block is padded
+        size -= size % 3;
+
+        byte[] buffer = new byte[size];
+        byte[] text = format.equals("hex") ? new byte[2 * size] : format.equals("base64") ? new byte[SDESCodec.base64Length(size)] : null;
+        int n;
+
+        while ((n = in.readNBytes(buffer, 0, size)) > 0) {
+
+            transform(key, encrypt, buffer, n, parallel);
+
+            if (format.equals("hex")) {
+
+                out.write(text, 0, SDESCodec.encodeHex(buffer, 0, n, text, 0));
+
+            } else if (format.equals("base64")) {
+
+                out.write(text, 0, SDESCodec.encodeBase64(buffer, 0, n, text, 0));
+
+            } else {
+
+                out.write(buffer, 0, n);
+
+            }
+
+        }
+
+        //the text formats end with a line break
+        if (text != null) {
+
+            out.write(System.lineSeparator().getBytes(StandardCharsets.US_ASCII));
+
+        }
+
+        out.flush();
+
+    }
+
+    /**
+     * @param in The hex or base64 cipher text to read until end of stream.
+     * @param out The stream the plain text is written to.
+     * @param key The key to decrypt with.
+     * @param unit The number of chars that decode together, 2 for hex and 4 for base64.
+     * @param size The number of chars read at a time.
+     * @param parallel Splits each block over its threads, or null to decrypt on the calling thread.
+     * @throws IOException
+     * @throws IllegalArgumentException If the input is malformed.
+     * Read a block of text, drop line breaks and other white space, decode every complete unit in place and decrypt
+     * it there, then carry the incomplete unit at the end over to the next block.
+     */
+    private static void decodeStream(InputStream in, OutputStream out, SDESKey key, int unit, int size, SDESParallel parallel) throws IOException, IllegalArgumentException {
+
+        byte[] text = new byte[size];
+        int kept = 0; // chars of an incomplete unit carried over from the last block
+
+        while (true) {
+
+            int read = in.readNBytes(text, kept, size - kept);
+            int end = kept;
+
+            for (int i = kept; i < kept + read; i++) {
+
+                byte c = text[i];
+
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+
+                    text[end++] = c;
+
+                }
+
+            }
+
+            if (read == 0) {
+
+                //check for text that stops part way through a unit
+                if (end != 0) {
+
+                    throw new IllegalArgumentException((unit == 2 ? "Hex" : "Base64") + " input ends in the middle of a " + (unit == 2 ? "byte" : "group"));
+
+                }
+
+                break;
+
+            }
+
+            int whole = end - end % unit;
+            int n = unit == 2 ? SDESCodec.decodeHex(text, 0, whole, text, 0) : SDESCodec.decodeBase64(text, 0, whole, text, 0);
+            transform(key, false, text, n, parallel);
+            out.write(text, 0, n);
+
+            kept = end - whole;
+            System.arraycopy(text, whole, text, 0, kept);
+
+        }
+
+        out.flush();
+
+    }
+
+    /**
+     * @param key The key to transform with.
+     * @param encrypt True to encrypt, false to decrypt.
+     * @param buffer The bytes to transform in place.
+     * @param n The number of bytes.
+     * @param parallel Splits the bytes over its threads, or null to transform on the calling thread.
+     */
+    private static void transform(SDESKey key, boolean encrypt, byte[] buffer, int n, SDESParallel parallel) {
+
+        if (parallel == null) {
+
+            key.transform(encrypt, buffer, 0, buffer, 0, n);
+
+        } else if (encrypt) {
+
+            parallel.encrypt(key, buffer, 0, n, buffer, 0);
+
+        } else {
+
+            parallel.decrypt(key, buffer, 0, n, buffer, 0);
+
+        }
+
+    }
+
+    /**
+     * The parsed command line.
+     */
+    private static final class Options {
+
+        private boolean help;
+        private boolean writeTables;
+        private boolean encrypt;
+        private String key;
+        private String keyFile;
+        private String keyEnv;
+        private String format = "raw";
+        private boolean mapped;
+        private int threads = 1;
+        private String spec;
+        private String tables;
+        private String input = "-";
+        private String output = "-";
+
+        /**
+         * @param args The command line.
+         * @return The options.
+         * @throws IllegalArgumentException
+         */
+        static Options parse(String[] args) throws IllegalArgumentException {
+
+            Options o = new Options();
+            String command = null;
+            int positional = 0;
+            int keySources = 0;
+
+            for (int i = 0; i < args.length; i++) {
+
+                String arg = args[i];
+
+                switch (arg) {
+
+                    case "-h":
+                    case "--help":
+                        o.help = true;
+                        return o;
+
+                    case "-k":
+                    case "--key":
+                        o.key = value(args, ++i, arg);
+                        keySources++;
+                        break;
+
+                    case "--key-file":
+                        o.keyFile = value(args, ++i, arg);
+                        keySources++;
+                        break;
+
+                    case "--key-env":
+                        o.keyEnv = value(args, ++i, arg);
+                        keySources++;
+                        break;
+
+                    case "-f":
+                    case "--format":
+                        o.format = value(args, ++i, arg);
+                        break;
+
+                    case "--io":
+                        o.mapped = choice(value(args, ++i, arg), arg, "buffered", "mapped").equals("mapped");
+                        break;
+
+                    case "-t":
+                    case "--threads":
+                        o.threads = threads(value(args, ++i, arg));
+                        break;
+
+                    case "--spec":
+                        o.spec = value(args, ++i, arg);
+                        break;
+
+                    case "--tables":
+                        o.tables = value(args, ++i, arg);
+                        break;
+
+                    default:
+                        if (arg.startsWith("-") && !arg.equals("-")) {
+
+                            throw new IllegalArgumentException("Unknown option " + arg);
+
+                        }
+
+                        if (command == null) {
+
+                            command = choice(arg, "command", "encrypt", "decrypt", "tables");
+
+                        } else if (positional == 0) {
+
+                            o.input = arg;
+                            positional++;
+
+                        } else if (positional == 1) {
+
+                            o.output = arg;
+                            positional++;
+
+                        } else {
+
+                            throw new IllegalArgumentException("Unexpected argument " + arg);
+
+                        }
+
+                }
+
+            }
+
+            if (command == null) {
+
+                throw new IllegalArgumentException("Missing command, expected encrypt, decrypt or tables");
+
+            }
+
+            if (command.equals("tables")) {
+
+                //check for a missing file or any output beyond it
+                if (positional != 1 || o.input.equals("-")) {
+
+                    throw new IllegalArgumentException("The tables command takes exactly one file");
+
+                }
+
+                o.writeTables = true;
+
+                return o;
+
+            }
+
+            o.encrypt = command.equals("encrypt");
+            choice(o.format, "--format", "raw", "hex", "base64");
+
+            if (keySources > 1) {
+
+                throw new IllegalArgumentException("Give the key only once, with --key, --key-file or --key-env");
+
+            }
+
+            //table files hold the tables of standard SDES keys only
+            if (o.tables != null && o.spec != null) {
+
+                throw new IllegalArgumentException("--tables holds standard SDES keys and cannot be combined with --spec");
+
+            }
+
+            //mapping needs real files on both sides and a byte for byte transform
+            if (o.mapped && (o.input.equals("-") || o.output.equals("-") || !o.format.equals("raw"))) {
+
+                throw new IllegalArgumentException("Mapped I/O needs an input file, an output file and raw format");
+
+            }
+
+            return o;
+
+        }
+
+        /**
+         * @param args The command line.
+         * @param i The index of the option's value.
+         * @param option The option, for the error message.
+         * @return The value.
+         * @throws IllegalArgumentException If the command line ends before the value.
+         */
+        private static String value(String[] args, int i, String option) throws IllegalArgumentException {
+
+            if (i >= args.length) {
+
+                throw new IllegalArgumentException("Missing value for " + option);
+
+            }
+
+            return args[i];
+
+        }
+
+        /**
+         * @param value The value given.
+         * @param option The option, for the error message.
+         * @param allowed The values accepted.
+         * @return The value.
+         * @throws IllegalArgumentException If the value is not one of allowed.
+         */
+        private static String choice(String value, String option, String... allowed) throws IllegalArgumentException {
+
+            for (String a : allowed) {
+
+                if (a.equals(value)) {
+
+                    return value;
+
+                }
+
+            }
+
+            throw new IllegalArgumentException("Invalid " + option + " (" + value + "), expected " + String.join(", ", allowed));
+
+        }
+
+        /**
+         * @param value The value of --threads.
+         * @return The thread count.
+         * @throws IllegalArgumentException If it is not a positive number.
+         */
+        private static int threads(String value) throws IllegalArgumentException {
+
+            int n;
+
+            try {
+
+                n = Integer.parseInt(value);
+
+            } catch (NumberFormatException e) {
+
+                n = 0;
+
+            }
+
+            if (n < 1) {
+
+                throw new IllegalArgumentException("Thread count (" + value + ") must be a number of at least 1");
+
+            }
+
+            return n;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,115 @@
+import java.util.Objects;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SDES as a SIMD table lookup with the incubating Vector API. Under one key the cipher is a permutation of the 256
+ * byte values, so the 256-entry table is split into parts as wide as a vector (16, 32 or 64 bytes). The low bits of
+ * each input byte select from every part with one shuffle, and the high bits pick which part's result to keep.
+ *
+ * The class needs the jdk.incubator.vector module; SDESEngines only loads it by name and falls back to the table
+ * engine when the module is not present.
+ */
+final class SDESVectorEngine implements SDESEngines.Unmetered {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length(); // the number of table entries in one part
+    private static final int SHIFT = Integer.numberOfTrailingZeros(LANES); // input bits that index within a part
+    private static final int PARTS = 256 / LANES;
+
+    @Override
+    public String getName() {
+
+        return "vector";
+
+    }
+
+    @Override
+    public void encrypt(SDESKey key, byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+        long start = SDESMetrics.ENABLED ? System.nanoTime() : 0L;
+        transform(key, true, src, srcOff, len, dst, dstOff);
+
+        if (SDESMetrics.ENABLED) {
+
+            SDESMetrics.record(true, len, start);
+
+        }
+
+    }
+
+    @Override
+    public void decrypt(SDESKey key, byte[] src, int srcOff, int len, byte[] dst, int dstOff) throws IndexOutOfBoundsException {
+
+        Objects.checkFromIndexSize(srcOff, len, src.length);
+        Objects.checkFromIndexSize(dstOff, len, dst.length);
+        long start = SDESMetrics.ENABLED ? System.nanoTime() : 0L;
+        transform(key, false, src, srcOff, len, dst, dstOff);
+
+        if (SDESMetrics.ENABLED) {
+
+            SDESMetrics.record(false, len, start);
+
+        }
+
+    }
+
+    @Override
+    public void transform(SDESKey key, boolean encrypt, byte[] src, int srcOff, int len, byte[] dst, int dstOff) {
+
+        lookup(key.table(encrypt), src, srcOff, len, dst, dstOff);
+
+    }
+
+    /**
+     * @param table The encrypt or decrypt table.
+     * @param src The bytes to transform.
+     * @param srcOff The index of the first byte.
+     * @param len The number of bytes.
+     * @param dst The array to write the result to.
+     * @param dstOff The index in dst of the first result byte.
+     */
+    private static void lookup(byte[] table, byte[] src, int srcOff, int len, byte[] dst, int dstOff) {
+
+        ByteVector[] parts = new ByteVector[PARTS];
+
+        for (int p = 0; p < PARTS; p++) {
+
+            parts[p] = ByteVector.fromArray(SPECIES, table, p * LANES);
+
+        }
+
+        int i = 0;
+        int bound = SPECIES.loopBound(len);
+
+        for (; i < bound; i += LANES) {
+
+            ByteVector v = ByteVector.fromArray(SPECIES, src, srcOff + i);
+            ByteVector index = v.and((byte) (LANES - 1));
+            ByteVector part = v.lanewise(VectorOperators.LSHR, SHIFT);
+            ByteVector result = index.selectFrom(parts[0]);
+
+            for (int p = 1; p < PARTS; p++) {
+
+                result = result.blend(index.selectFrom(parts[p]), part.eq((byte) p));
+
+            }
+
+            result.intoArray(dst, dstOff + i);
+
+        }
+
+        //the tail that does not fill a vector
+        for (; i < len; i++) {
+
+            dst[dstOff + i] = table[src[srcOff + i] & 0xFF];
+
+        }
+
+    }
+
+}
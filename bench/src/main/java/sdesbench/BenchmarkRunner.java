@@ -0,0 +1,48 @@
+package sdesbench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the gc profiler at 1, 2, 4, ... threads up to the number of cores, so every run reports
+ * allocation rate next to throughput and shows how each path scales. Arguments are benchmark name patterns, all
+ * benchmarks run when there are none.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class);
+
+            for (String pattern : args) {
+
+                options.include(pattern);
+
+            }
+
+            new Runner(options.build()).run();
+
+            if (threads == cores) {
+
+                break;
+
+            }
+
+        }
+
+    }
+
+}
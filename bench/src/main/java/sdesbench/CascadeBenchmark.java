@@ -0,0 +1,73 @@
+package sdesbench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the compiled SDES cascades: building the tables for a key tuple, and encrypting 64 KB with them. The
+ * encryption time should not depend on the number of stages or rounds, only the compile time does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CascadeBenchmark {
+
+    @Param({"1", "2", "3"})
+    public int stages;
+
+    @Param({"2", "4", "16"})
+    public int rounds;
+
+    private int[] keys;
+    private Object cascade;
+    private byte[] plain = new byte[65536];
+    private byte[] cipher = new byte[65536];
+
+    @Setup
+    public void setup() throws Throwable {
+
+        keys = new int[stages];
+
+        for (int i = 0; i < stages; i++) {
+
+            keys[i] = (0b1010000010 + 311 * i) & 0x3FF;
+
+        }
+
+        cascade = SDESHandles.NEW_CASCADE.invokeExact(SDESHandles.STANDARD_SPEC, rounds, keys);
+        new Random(1).nextBytes(plain);
+
+    }
+
+    @Benchmark
+    public Object compile() throws Throwable {
+
+        return SDESHandles.NEW_CASCADE.invokeExact(SDESHandles.STANDARD_SPEC, rounds, keys);
+
+    }
+
+    @Benchmark
+    public byte[] encrypt64k() throws Throwable {
+
+        SDESHandles.CASCADE_ENCRYPT.invokeExact(cascade, plain, 0, plain.length, cipher, 0);
+
+        return cipher;
+
+    }
+
+}
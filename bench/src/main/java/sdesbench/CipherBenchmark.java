@@ -0,0 +1,99 @@
+package sdesbench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of the SDES entry points on messages from 16 bytes to 64 MB. Each thread has its own message and
+ * SDES instance, so running with more threads measures how the cipher scales across cores.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CipherBenchmark {
+
+    @Param({"16", "1024", "65536", "1048576", "16777216", "67108864"})
+    public int size;
+
+    private Object sdes;
+    private String message;
+    private byte[] cipher;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+
+        sdes = SDESHandles.newSDES(0b1010000010);
+
+        //printable ASCII, so the String round trip through getBytes keeps the size
+        char[] chars = new char[size];
+        Random random = new Random(size);
+
+        for (int i = 0; i < size; i++) {
+
+            chars[i] = (char) (' ' + random.nextInt(95));
+
+        }
+
+        message = new String(chars);
+        cipher = (byte[]) SDESHandles.ENCRYPT_STRING.invokeExact(sdes, message);
+
+    }
+
+    @Benchmark
+    public byte[] encryptString() throws Throwable {
+
+        return (byte[]) SDESHandles.ENCRYPT_STRING.invokeExact(sdes, message);
+
+    }
+
+    @Benchmark
+    public byte[] decryptBytes() throws Throwable {
+
+        return (byte[]) SDESHandles.DECRYPT.invokeExact(sdes, cipher);
+
+    }
+
+    @Benchmark
+    public void encryptByteLoop(Blackhole bh) throws Throwable {
+
+        byte[] c = cipher;
+
+        for (int i = 0; i < c.length; i++) {
+
+            bh.consume((byte) SDESHandles.ENCRYPT_BYTE.invokeExact(sdes, c[i]));
+
+        }
+
+    }
+
+    @Benchmark
+    public void decryptByteLoop(Blackhole bh) throws Throwable {
+
+        byte[] c = cipher;
+
+        for (int i = 0; i < c.length; i++) {
+
+            bh.consume((byte) SDESHandles.DECRYPT_BYTE.invokeExact(sdes, c[i]));
+
+        }
+
+    }
+
+}
@@ -0,0 +1,92 @@
+package sdesbench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a single call to the bit-level building blocks: expPerm, the S-boxes in their boolean[] and packed forms,
+ * one packed two-round evaluation, and the key schedule that expands a key into its subkeys and tables.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrimitivesBenchmark {
+
+    private static final int[] EP = {3, 0, 1, 2, 1, 2, 3, 0};
+
+    private Object sdes;
+    private boolean[] half = {true, false, true, true};
+    private int packed = 0b1011;
+    private int key = 0b1010000010;
+    private byte block = 0x5A;
+
+    @Setup
+    public void setup() {
+
+        sdes = SDESHandles.newSDES(key);
+
+    }
+
+    @Benchmark
+    public boolean[] expPerm() throws Throwable {
+
+        return (boolean[]) SDESHandles.EXP_PERM.invokeExact(sdes, half, EP);
+
+    }
+
+    @Benchmark
+    public boolean[] s0() throws Throwable {
+
+        return (boolean[]) SDESHandles.S0.invokeExact(sdes, half);
+
+    }
+
+    @Benchmark
+    public boolean[] s1() throws Throwable {
+
+        return (boolean[]) SDESHandles.S1.invokeExact(sdes, half);
+
+    }
+
+    @Benchmark
+    public int packedS0() throws Throwable {
+
+        return (int) SDESHandles.PACKED_S0.invokeExact(packed);
+
+    }
+
+    @Benchmark
+    public int packedS1() throws Throwable {
+
+        return (int) SDESHandles.PACKED_S1.invokeExact(packed);
+
+    }
+
+    @Benchmark
+    public byte packedRounds() throws Throwable {
+
+        return (byte) SDESHandles.PACKED_ROUNDS.invokeExact(block, 0xA4, 0x43);
+
+    }
+
+    @Benchmark
+    public Object keySchedule() throws Throwable {
+
+        return (Object) SDESHandles.KEY_OF.invokeExact(key);
+
+    }
+
+}
@@ -0,0 +1,174 @@
+package sdesbench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Constant method handles onto the SDES classes. The cipher lives in the unnamed package, which JMH benchmarks
+ * cannot be declared in and which code in a named package cannot import, so the benchmarks call it through these
+ * handles instead. A static final handle is a constant to the JIT and invokeExact on it is inlined like a direct
+ * call, so the measurements are not distorted.
+ */
+final class SDESHandles {
+
+    static final Class<?> SDES = load("SDES");
+    static final Class<?> SDES_KEY = load("SDESKey");
+    static final Class<?> SDES_BITS = load("SDESBits");
+    static final Class<?> SDES_SPEC = load("SDESSpec");
+    static final Class<?> SDES_CASCADE = load("SDESCascade");
+
+    /** (int key) -> SDESKey */
+    static final MethodHandle KEY_OF = findStatic(SDES_KEY, "of", SDES_KEY, int.class);
+    /** (SDESKey key) -> SDES */
+    static final MethodHandle NEW_SDES = findConstructor(SDES, SDES_KEY);
+
+    /** (SDES sdes, byte b) -> byte */
+    static final MethodHandle ENCRYPT_BYTE = findVirtual(SDES, "encryptByte", byte.class, byte.class);
+    /** (SDES sdes, byte b) -> byte */
+    static final MethodHandle DECRYPT_BYTE = findVirtual(SDES, "decryptByte", byte.class, byte.class);
+    /** (SDES sdes, String msg) -> byte[] */
+    static final MethodHandle ENCRYPT_STRING = findVirtual(SDES, "encrypt", byte[].class, String.class);
+    /** (SDES sdes, byte[] cipher) -> byte[] */
+    static final MethodHandle DECRYPT = findVirtual(SDES, "decrypt", byte[].class, byte[].class);
+    /** (SDES sdes, boolean[] inp, int[] epv) -> boolean[] */
+    static final MethodHandle EXP_PERM = findVirtual(SDES, "expPerm", boolean[].class, boolean[].class, int[].class);
+    /** (SDES sdes, boolean[] a) -> boolean[] */
+    static final MethodHandle S0 = findVirtual(SDES, "s0", boolean[].class, boolean[].class);
+    /** (SDES sdes, boolean[] b) -> boolean[] */
+    static final MethodHandle S1 = findVirtual(SDES, "s1", boolean[].class, boolean[].class);
+    /** (int a) -> int */
+    static final MethodHandle PACKED_S0 = findStatic(SDES_BITS, "s0", int.class, int.class);
+    /** (int b) -> int */
+    static final MethodHandle PACKED_S1 = findStatic(SDES_BITS, "s1", int.class, int.class);
+    /** (byte b, int key1, int key2) -> byte */
+    static final MethodHandle PACKED_ROUNDS = findStatic(SDES_BITS, "encryptByte", byte.class, byte.class, int.class, int.class);
+    /** (SDESSpec spec, int rounds, int[] keys) -> SDESCascade */
+    static final MethodHandle NEW_CASCADE = findConstructor(SDES_CASCADE, SDES_SPEC, int.class, int[].class);
+    /** (SDESCascade cascade, byte[] src, int srcOff, int len, byte[] dst, int dstOff) -> void */
+    static final MethodHandle CASCADE_ENCRYPT = findVirtual(SDES_CASCADE, "encrypt", void.class, byte[].class, int.class, int.class, byte[].class, int.class);
+    /** SDESSpec.STANDARD */
+    static final Object STANDARD_SPEC = standardSpec();
+
+    private SDESHandles() {
+
+    }
+
+    /**
+     * @param key The key as an int, 0..1023.
+     * @return A new SDES instance using the key.
+     */
+    static Object newSDES(int key) {
+
+        try {
+
+            return NEW_SDES.invoke(KEY_OF.invoke(key));
+
+        } catch (Throwable t) {
+
+            throw new IllegalStateException(t);
+
+        }
+
+    }
+
+    private static Object standardSpec() {
+
+        try {
+
+            return SDES_SPEC.getField("STANDARD").get(null);
+
+        } catch (ReflectiveOperationException e) {
+
+            throw new ExceptionInInitializerError(e);
+
+        }
+
+    }
+
+    private static Class<?> load(String name) {
+
+        try {
+
+            return Class.forName(name);
+
+        } catch (ClassNotFoundException e) {
+
+            throw new ExceptionInInitializerError(e);
+
+        }
+
+    }
+
+    /**
+     * @param handle A handle onto an SDES method.
+     * @return The handle with every SDES type in its signature replaced by Object, which invokeExact call sites
+     * outside the unnamed package can name.
+     */
+    private static MethodHandle erase(MethodHandle handle) {
+
+        MethodType type = handle.type();
+
+        for (int i = 0; i < type.parameterCount(); i++) {
+
+            if (type.parameterType(i).getPackageName().isEmpty()) {
+
+                type = type.changeParameterType(i, Object.class);
+
+            }
+
+        }
+
+        if (type.returnType().getPackageName().isEmpty() && !type.returnType().isPrimitive()) {
+
+            type = type.changeReturnType(Object.class);
+
+        }
+
+        return handle.asType(type);
+
+    }
+
+    private static MethodHandle findStatic(Class<?> owner, String name, Class<?> returnType, Class<?>... parameterTypes) {
+
+        try {
+
+            return erase(MethodHandles.publicLookup().findStatic(owner, name, MethodType.methodType(returnType, parameterTypes)));
+
+        } catch (ReflectiveOperationException e) {
+
+            throw new ExceptionInInitializerError(e);
+
+        }
+
+    }
+
+    private static MethodHandle findVirtual(Class<?> owner, String name, Class<?> returnType, Class<?>... parameterTypes) {
+
+        try {
+
+            return erase(MethodHandles.publicLookup().findVirtual(owner, name, MethodType.methodType(returnType, parameterTypes)));
+
+        } catch (ReflectiveOperationException e) {
+
+            throw new ExceptionInInitializerError(e);
+
+        }
+
+    }
+
+    private static MethodHandle findConstructor(Class<?> owner, Class<?>... parameterTypes) {
+
+        try {
+
+            return erase(MethodHandles.publicLookup().findConstructor(owner, MethodType.methodType(void.class, parameterTypes)));
+
+        } catch (ReflectiveOperationException e) {
+
+            throw new ExceptionInInitializerError(e);
+
+        }
+
+    }
+
+}